@@ -0,0 +1,115 @@
+package collections;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Order ingest: order lines restocking or selling one unit of random products, with a new product now and then,
+// fed to each inventory one call per line and then as batches of batchSize lines through applyBatch. Like real
+// orders, most lines are for a few best sellers: half of them go to 1% of the products. Reports lines per second for
+// both; every pair of runs must end with the same stock. The durable inventory syncs once per call, so it only runs
+// a tenth of the lines.
+//
+// Usage: BatchIngestBenchmark [products=100000] [lines=2000000] [batchSize=1000]
+public class BatchIngestBenchmark {
+    private static final Logger logger = LogManager.getLogger();
+    private static final int ROUNDS = 3;
+
+    private interface Factory {
+        Inventory create() throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int productCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int lineCount = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+
+        logger.info(String.format("%,d products, %,d order lines, batches of %,d", productCount, lineCount, batchSize));
+        logger.info(String.format("%-20s %16s %16s", "inventory", "single lines/sec", "batch lines/sec"));
+        for (int round = 0; round < ROUNDS; round++) {
+            // The earlier rounds only warm up the JIT
+            boolean report = round == ROUNDS - 1;
+            compare("Inventory", Inventory::new, productCount, lineCount, batchSize, report);
+            compare("ConcurrentInventory", ConcurrentInventory::new, productCount, lineCount, batchSize, report);
+            compare("DurableInventory", () -> new DurableInventory(Files.createTempDirectory("batch-benchmark")),
+                    productCount, lineCount / 10, batchSize, report);
+        }
+    }
+
+    private static void compare(String name, Factory factory, int productCount, int lineCount, int batchSize,
+                                boolean report) throws IOException {
+        List<Line> lines = lines(productCount, lineCount);
+        Inventory single = stocked(factory.create(), productCount);
+        long start = System.nanoTime();
+        for (Line line : lines) {
+            if (line.sell) single.removeProduct(line.product());
+            else single.addProduct(line.product());
+        }
+        long singleNanos = System.nanoTime() - start;
+
+        Inventory batched = stocked(factory.create(), productCount);
+        start = System.nanoTime();
+        for (int from = 0; from < lines.size(); from += batchSize) {
+            InventoryBatch batch = new InventoryBatch();
+            for (Line line : lines.subList(from, Math.min(lines.size(), from + batchSize))) {
+                if (line.sell) batch.removeProduct(line.product());
+                else batch.addProduct(line.product());
+            }
+            batched.applyBatch(batch);
+        }
+        long batchNanos = System.nanoTime() - start;
+
+        for (int id = 0; id < productCount + lineCount; id++) {
+            if (single.getQuantity(id) != batched.getQuantity(id)) throw new IllegalStateException(name + " batch differs at " + id);
+        }
+        close(single);
+        close(batched);
+        if (!report) return;
+        logger.info(String.format("%-20s %,16.0f %,16.0f", name, lines.size() * 1e9 / singleNanos, lines.size() * 1e9 / batchNanos));
+    }
+
+    private static final class Line {
+        private final int id;
+        private final boolean sell;
+
+        private Line(int id, boolean sell) {
+            this.id = id;
+            this.sell = sell;
+        }
+
+        // A fresh product each time, since an inventory keeps the product it is given
+        private Product product() {
+            return new Product(id, "Product " + id, 10.0, 1);
+        }
+    }
+
+    // Adding a stocked product restocks one unit of it; one line in a hundred adds a new product
+    private static List<Line> lines(int productCount, int lineCount) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Line> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            if (random.nextInt(100) == 0) lines.add(new Line(productCount + i, false));
+            else if (random.nextBoolean()) lines.add(new Line(random.nextInt(Math.max(1, productCount / 100)), random.nextBoolean()));
+            else lines.add(new Line(random.nextInt(productCount), random.nextBoolean()));
+        }
+        return lines;
+    }
+
+    private static Inventory stocked(Inventory inventory, int productCount) {
+        InventoryBatch batch = new InventoryBatch();
+        for (int id = 0; id < productCount; id++) {
+            batch.addProduct(new Product(id, "Product " + id, 10.0, 1_000_000));
+        }
+        inventory.applyBatch(batch);
+        return inventory;
+    }
+
+    private static void close(Inventory inventory) throws IOException {
+        if (inventory instanceof DurableInventory) ((DurableInventory) inventory).close();
+    }
+}
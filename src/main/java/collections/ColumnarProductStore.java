@@ -0,0 +1,279 @@
+package collections;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Struct-of-arrays product storage for analytics over very large catalogs. Ids, prices, quantities and name codes
+// are off-heap columns, one MemorySegment each, so a product costs 20 bytes outside the heap plus about 11 bytes
+// of id-to-row table instead of a Product object, its name and a map entry, and the GC never walks them. Names are
+// dictionary encoded: each distinct name is stored once and rows hold its code. Rows stay dense, removing a product
+// moves the last row into its place, so scans are straight loops over the first size elements of each column.
+// Not thread safe; close() frees the columns.
+//
+// It is not a ProductStore and has no StorageType: an Inventory changes the Product objects its store holds in place
+// and its name index finds them by identity, while this store keeps values, not objects, and get builds a new
+// Product each time. It is filled from an inventory with copyOf and is a snapshot of it, not kept up to date
+class ColumnarProductStore implements AutoCloseable {
+    private static final int FREE = -1;
+    private static final int NO_NAME = -1;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MAX_TABLE = 1 << 30;
+
+    private Arena arena;
+    private MemorySegment ids;
+    private MemorySegment prices;
+    private MemorySegment quantities;
+    private MemorySegment nameCodes;
+    private int capacity;
+    private int size;
+
+    // Open-addressing table from product id to row
+    private int[] slotIds;
+    private int[] slotRows;
+    private int mask;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    ColumnarProductStore(int expectedProducts) {
+        if (expectedProducts < 0) throw new IllegalArgumentException("Expected products cannot be negative");
+        allocateColumns(Math.max(16, expectedProducts));
+        long needed = (long) Math.ceil(expectedProducts / (double) LOAD_FACTOR) + 1;
+        if (needed > MAX_TABLE) throw new IllegalArgumentException("Too many products: " + expectedProducts);
+        allocateTable(Math.max(16, Integer.highestOneBit((int) needed - 1) << 1));
+    }
+
+    ColumnarProductStore() {
+        this(16);
+    }
+
+    // Columns holding a copy of the inventory's current products; later changes to the inventory don't reach it
+    static ColumnarProductStore copyOf(Inventory inventory) {
+        List<Product> products = inventory.products();
+        ColumnarProductStore store = new ColumnarProductStore(products.size());
+        for (Product product : products) {
+            store.put(product);
+        }
+        return store;
+    }
+
+    // Adds the product, or overwrites the stored values of one with the same id
+    void put(Product product) {
+        int row = rowOf(product.getId());
+        if (row == FREE) {
+            if (size == capacity) allocateColumns(capacity * 2);
+            row = size++;
+            ids.setAtIndex(ValueLayout.JAVA_INT, row, product.getId());
+            insertRow(product.getId(), row);
+        }
+        prices.setAtIndex(ValueLayout.JAVA_DOUBLE, row, product.getPrice());
+        quantities.setAtIndex(ValueLayout.JAVA_INT, row, product.getQuantity());
+        nameCodes.setAtIndex(ValueLayout.JAVA_INT, row, codeOf(product.getName()));
+    }
+
+    // Adds delta to the stock of a product; false if it isn't stored
+    boolean restock(int id, int delta) {
+        int row = rowOf(id);
+        if (row == FREE) return false;
+        int quantity = Math.addExact(quantities.getAtIndex(ValueLayout.JAVA_INT, row), delta);
+        if (quantity < 0) throw new IllegalArgumentException("Quantity cannot be negative");
+        quantities.setAtIndex(ValueLayout.JAVA_INT, row, quantity);
+        return true;
+    }
+
+    boolean remove(int id) {
+        int row = rowOf(id);
+        if (row == FREE) return false;
+        deleteRow(id);
+        int last = --size;
+        if (row != last) {
+            int movedId = ids.getAtIndex(ValueLayout.JAVA_INT, last);
+            ids.setAtIndex(ValueLayout.JAVA_INT, row, movedId);
+            prices.setAtIndex(ValueLayout.JAVA_DOUBLE, row, prices.getAtIndex(ValueLayout.JAVA_DOUBLE, last));
+            quantities.setAtIndex(ValueLayout.JAVA_INT, row, quantities.getAtIndex(ValueLayout.JAVA_INT, last));
+            nameCodes.setAtIndex(ValueLayout.JAVA_INT, row, nameCodes.getAtIndex(ValueLayout.JAVA_INT, last));
+            slotRows[slotOf(movedId)] = row;
+        }
+        return true;
+    }
+
+    // A Product holding the stored values, or null
+    Product get(int id) {
+        int row = rowOf(id);
+        if (row == FREE) return null;
+        int code = nameCodes.getAtIndex(ValueLayout.JAVA_INT, row);
+        return new Product(id, code == NO_NAME ? null : names.get(code),
+                prices.getAtIndex(ValueLayout.JAVA_DOUBLE, row), quantities.getAtIndex(ValueLayout.JAVA_INT, row));
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Off-heap bytes held by the columns, including room not used yet
+    long offHeapBytes() {
+        return (long) capacity * (Integer.BYTES * 3 + Double.BYTES);
+    }
+
+    // Sum of price * quantity over every product. Four running sums break the dependency between iterations, which
+    // lets the CPU overlap the multiplies and additions of neighbouring rows
+    double totalStockValue() {
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+        long row = 0;
+        for (; row + 4 <= size; row += 4) {
+            sum0 += prices.getAtIndex(ValueLayout.JAVA_DOUBLE, row) * quantities.getAtIndex(ValueLayout.JAVA_INT, row);
+            sum1 += prices.getAtIndex(ValueLayout.JAVA_DOUBLE, row + 1) * quantities.getAtIndex(ValueLayout.JAVA_INT, row + 1);
+            sum2 += prices.getAtIndex(ValueLayout.JAVA_DOUBLE, row + 2) * quantities.getAtIndex(ValueLayout.JAVA_INT, row + 2);
+            sum3 += prices.getAtIndex(ValueLayout.JAVA_DOUBLE, row + 3) * quantities.getAtIndex(ValueLayout.JAVA_INT, row + 3);
+        }
+        for (; row < size; row++) {
+            sum0 += prices.getAtIndex(ValueLayout.JAVA_DOUBLE, row) * quantities.getAtIndex(ValueLayout.JAVA_INT, row);
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    // Number of products with fewer than threshold units in stock; branch free, so the result of one row's
+    // comparison never stalls the next
+    int countBelowQuantity(int threshold) {
+        int count = 0;
+        for (long row = 0; row < size; row++) {
+            // 1 when quantity < threshold: the difference is negative, so its sign bit is set
+            count += (int) (((long) quantities.getAtIndex(ValueLayout.JAVA_INT, row) - threshold) >>> 63);
+        }
+        return count;
+    }
+
+    // Ids of the products with fewer than threshold units in stock, in row order
+    int[] idsBelowQuantity(int threshold) {
+        int[] found = new int[countBelowQuantity(threshold)];
+        int n = 0;
+        for (long row = 0; row < size && n < found.length; row++) {
+            if (quantities.getAtIndex(ValueLayout.JAVA_INT, row) < threshold) {
+                found[n++] = ids.getAtIndex(ValueLayout.JAVA_INT, row);
+            }
+        }
+        return found;
+    }
+
+    // Product counts per price bucket: buckets equal slices of [min, max], max itself counting in the last one.
+    // Prices outside the range aren't counted
+    long[] priceHistogram(double min, double max, int buckets) {
+        if (buckets <= 0) throw new IllegalArgumentException("Buckets must be positive");
+        if (!(max > min)) throw new IllegalArgumentException("Max must be greater than min");
+        long[] counts = new long[buckets];
+        double scale = buckets / (max - min);
+        for (long row = 0; row < size; row++) {
+            double price = prices.getAtIndex(ValueLayout.JAVA_DOUBLE, row);
+            if (price < min || price > max) continue;
+            counts[Math.min((int) ((price - min) * scale), buckets - 1)]++;
+        }
+        return counts;
+    }
+
+    @Override
+    public void close() {
+        if (arena == null) return;
+        arena.close();
+        arena = null;
+        size = 0;
+    }
+
+    private int codeOf(String name) {
+        if (name == null) return NO_NAME;
+        Integer code = codes.get(name);
+        if (code == null) {
+            code = names.size();
+            codes.put(name, code);
+            names.add(name);
+        }
+        return code;
+    }
+
+    // Moves the columns to a new arena with room for capacity rows and frees the old one
+    private void allocateColumns(int newCapacity) {
+        if (newCapacity < 0) throw new IllegalStateException("Columnar store is full");
+        Arena newArena = Arena.ofShared();
+        MemorySegment newIds = newArena.allocate((long) newCapacity * Integer.BYTES, Long.BYTES);
+        MemorySegment newPrices = newArena.allocate((long) newCapacity * Double.BYTES, Long.BYTES);
+        MemorySegment newQuantities = newArena.allocate((long) newCapacity * Integer.BYTES, Long.BYTES);
+        MemorySegment newNameCodes = newArena.allocate((long) newCapacity * Integer.BYTES, Long.BYTES);
+        if (arena != null) {
+            MemorySegment.copy(ids, 0, newIds, 0, (long) size * Integer.BYTES);
+            MemorySegment.copy(prices, 0, newPrices, 0, (long) size * Double.BYTES);
+            MemorySegment.copy(quantities, 0, newQuantities, 0, (long) size * Integer.BYTES);
+            MemorySegment.copy(nameCodes, 0, newNameCodes, 0, (long) size * Integer.BYTES);
+            arena.close();
+        }
+        arena = newArena;
+        ids = newIds;
+        prices = newPrices;
+        quantities = newQuantities;
+        nameCodes = newNameCodes;
+        capacity = newCapacity;
+    }
+
+    private int rowOf(int id) {
+        int slot = slotOf(id);
+        return slot < 0 ? FREE : slotRows[slot];
+    }
+
+    private int slotOf(int id) {
+        if (id < 0) return -1;
+        for (int slot = IntProductMap.hash(id) & mask; ; slot = (slot + 1) & mask) {
+            if (slotIds[slot] == id) return slot;
+            if (slotIds[slot] == FREE) return -1;
+        }
+    }
+
+    private void insertRow(int id, int row) {
+        if (size > (int) (slotIds.length * LOAD_FACTOR)) growTable();
+        int slot = IntProductMap.hash(id) & mask;
+        while (slotIds[slot] != FREE) slot = (slot + 1) & mask;
+        slotIds[slot] = id;
+        slotRows[slot] = row;
+    }
+
+    // Same backward shift as IntProductMap, so lookups never cross tombstones
+    private void deleteRow(int id) {
+        int free = slotOf(id);
+        for (int next = (free + 1) & mask; slotIds[next] != FREE; next = (next + 1) & mask) {
+            int home = IntProductMap.hash(slotIds[next]) & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                slotIds[free] = slotIds[next];
+                slotRows[free] = slotRows[next];
+                free = next;
+            }
+        }
+        slotIds[free] = FREE;
+    }
+
+    private void growTable() {
+        if (slotIds.length == MAX_TABLE) throw new IllegalStateException("Columnar store is full");
+        int[] oldIds = slotIds;
+        int[] oldRows = slotRows;
+        allocateTable(oldIds.length * 2);
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] == FREE) continue;
+            int slot = IntProductMap.hash(oldIds[i]) & mask;
+            while (slotIds[slot] != FREE) slot = (slot + 1) & mask;
+            slotIds[slot] = oldIds[i];
+            slotRows[slot] = oldRows[i];
+        }
+    }
+
+    private void allocateTable(int length) {
+        slotIds = new int[length];
+        Arrays.fill(slotIds, FREE);
+        slotRows = new int[length];
+        mask = length - 1;
+    }
+}
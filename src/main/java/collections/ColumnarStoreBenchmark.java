@@ -0,0 +1,117 @@
+package collections;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Compares analytics over an object-per-product Inventory with the same catalog in a ColumnarProductStore: memory
+// per product, then total stock value, low-stock count and price histogram scans, reported as millions of products
+// and gigabytes of column data read per second. Run with a heap big enough for the object catalog, e.g. -Xmx2g for
+// the default; the columns themselves live outside the heap.
+//
+// Usage: ColumnarStoreBenchmark [products=5000000] [rounds=5]
+public class ColumnarStoreBenchmark {
+    private static final Logger logger = LogManager.getLogger();
+    private static final int LOW_STOCK = 10;
+    private static final double MAX_PRICE = 1_000.0;
+    private static final int BUCKETS = 20;
+
+    public static void main(String[] args) {
+        int productCount = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        long heapBefore = usedHeap();
+        Inventory inventory = new Inventory(StorageType.INT_MAP);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < productCount; i++) {
+            // A few hundred distinct names, like product lines, and sparse ids like real SKUs
+            inventory.addProduct(new Product(1_000 + i * 7, "Product " + random.nextInt(500),
+                    Math.floor(random.nextDouble(MAX_PRICE) * 100) / 100, random.nextInt(200)));
+        }
+        long objectBytes = usedHeap() - heapBefore;
+
+        heapBefore = usedHeap();
+        try (ColumnarProductStore columns = ColumnarProductStore.copyOf(inventory)) {
+            long columnHeapBytes = usedHeap() - heapBefore;
+            // The columns are sized exactly by copyOf, so offHeapBytes has no spare room in it
+            logger.info(String.format("%,d products: objects %.1f bytes/product, columns %.1f off-heap + %.1f heap",
+                    productCount, objectBytes / (double) productCount, columns.offHeapBytes() / (double) productCount,
+                    columnHeapBytes / (double) productCount));
+
+            List<Product> products = new ArrayList<>(productCount);
+            for (Product product : inventory.inventory) {
+                products.add(product);
+            }
+            for (int round = 0; round < rounds; round++) {
+                // The earlier rounds only warm up the JIT
+                boolean report = round == rounds - 1;
+                compare("total value", report, productCount, Double.BYTES + Integer.BYTES,
+                        () -> objectValue(products), columns::totalStockValue);
+                compare("low stock", report, productCount, Integer.BYTES,
+                        () -> objectLowStock(products), () -> columns.countBelowQuantity(LOW_STOCK));
+                compare("histogram", report, productCount, Double.BYTES,
+                        () -> objectHistogram(products)[0], () -> columns.priceHistogram(0, MAX_PRICE, BUCKETS)[0]);
+            }
+        }
+    }
+
+    private interface Scan {
+        double run();
+    }
+
+    private static void compare(String name, boolean report, int products, int bytesPerProduct, Scan objects, Scan columns) {
+        long start = System.nanoTime();
+        double expected = objects.run();
+        long objectNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        double actual = columns.run();
+        long columnNanos = System.nanoTime() - start;
+
+        // Sums may differ in the last bits because the columns add in a different order
+        if (Math.abs(expected - actual) > Math.abs(expected) * 1e-9) {
+            throw new IllegalStateException(name + ": objects gave " + expected + ", columns " + actual);
+        }
+        if (!report) return;
+        logger.info(String.format("%-12s objects %,8.1f M/s   columns %,8.1f M/s %6.2f GB/s", name,
+                products * 1e3 / objectNanos, products * 1e3 / columnNanos,
+                (double) products * bytesPerProduct / columnNanos));
+    }
+
+    private static double objectValue(List<Product> products) {
+        double sum = 0;
+        for (Product product : products) {
+            sum += product.getPrice() * product.getQuantity();
+        }
+        return sum;
+    }
+
+    private static double objectLowStock(List<Product> products) {
+        int count = 0;
+        for (Product product : products) {
+            if (product.getQuantity() < LOW_STOCK) count++;
+        }
+        return count;
+    }
+
+    private static long[] objectHistogram(List<Product> products) {
+        long[] counts = new long[BUCKETS];
+        double scale = BUCKETS / MAX_PRICE;
+        for (Product product : products) {
+            double price = product.getPrice();
+            if (price < 0 || price > MAX_PRICE) continue;
+            counts[Math.min((int) (price * scale), BUCKETS - 1)]++;
+        }
+        return counts;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
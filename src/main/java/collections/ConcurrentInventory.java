@@ -0,0 +1,297 @@
+package collections;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+// Inventory that many threads can update at once. Every change to a product runs inside ConcurrentHashMap.compute,
+// which locks only the map bin holding that product, so the check and the update are one atomic step and threads
+// working on different products rarely wait for each other. A stored Product is never changed: each change swaps in
+// a new one, so reads are a plain get and never see half of an update, and the products they hand out must not be
+// changed either. The indexes are updated within the same step; they are skip lists that take no lock, so changes
+// to different products don't wait on them either. Stock changes only reach the quantity index, once built, so the
+// other indexes may hold an older value of a product, and queries look up the current one by id.
+// Batches lock stripes: each id is hashed to one of a fixed set of lock stripes, so neighbouring ids, like
+// sequential SKUs, land on different locks. A change to one product holds its stripe's read lock, so those still
+// run side by side, while a batch holds the write lock of every stripe it touches. No other change can reach a
+// batch's products between its validation and its apply, and batches touching disjoint stripes run in parallel
+class ConcurrentInventory extends Inventory {
+    private static final Logger logger = LogManager.getLogger();
+    private static final int STRIPES = 64;
+    // Batches touching at least this many products apply their stripes in parallel
+    private static final int PARALLEL_BATCH = 4096;
+
+    private final ConcurrentHashMap<Integer, Product> products;
+    private final ReentrantReadWriteLock[] stripes = new ReentrantReadWriteLock[STRIPES];
+
+    public ConcurrentInventory() {
+        this(new ConcurrentHashMap<>());
+    }
+
+    private ConcurrentInventory(ConcurrentHashMap<Integer, Product> products) {
+        super(new MapProductStore(products));
+        this.products = products;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    @Override
+    public void addProduct(Product product) {
+        //product already exists then increment product count by 1;
+        Lock lock = stripeOf(product.getId()).readLock();
+        lock.lock();
+        try {
+            products.compute(product.getId(), (id, existing) -> {
+                if (existing == null) {
+                    // A copy, since the caller may go on changing its product
+                    Product added = copyOf(product);
+                    changed(id, added);
+                    indexAdded(added);
+                    publishAdded(added);
+                    return added;
+                }
+                Product updated = withQuantity(existing, existing.getQuantity() + 1);
+                changed(id, updated);
+                quantityChanged(existing, updated);
+                return updated;
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void removeProduct(Product product) {
+        boolean found = apply(product.getId(), existing -> {
+            if (existing.getQuantity() <= 1) {
+                changed(existing.getId(), null);
+                indexRemoved(existing);
+                publishRemoved(existing);
+                return null;
+            }
+            Product updated = withQuantity(existing, existing.getQuantity() - 1);
+            changed(existing.getId(), updated);
+            quantityChanged(existing, updated);
+            return updated;
+        });
+        if (!found) logger.warn("Product not found");
+    }
+
+    @Override
+    public void deleteProduct(Product product) {
+        boolean found = apply(product.getId(), existing -> {
+            changed(existing.getId(), null);
+            indexRemoved(existing);
+            publishRemoved(existing);
+            return null;
+        });
+        if (!found) logger.warn("Product not found");
+    }
+
+    @Override
+    public void updateProduct(Product product, String newName, double newPrice, int newQuantity) {
+        // Validated up front, so a bad value leaves the product untouched
+        Product updated = new Product(product.getId(), newName, newPrice, newQuantity);
+        boolean found = apply(product.getId(), existing -> {
+            changed(existing.getId(), updated);
+            indexRemoved(existing);
+            indexAdded(updated);
+            publishChanged(updated, existing.getPrice(), existing.getQuantity());
+            return updated;
+        });
+        if (!found) logger.warn("Product not found");
+    }
+
+    @Override
+    public void restockProduct(Product product, int additionalQuantity) {
+        boolean found = apply(product.getId(), existing -> {
+            Product updated = withQuantity(existing, Math.addExact(existing.getQuantity(), additionalQuantity));
+            changed(existing.getId(), updated);
+            quantityChanged(existing, updated);
+            return updated;
+        });
+        if (!found) logger.warn("Product Not Found");
+    }
+
+    @Override
+    public void applyBatch(InventoryBatch batch) {
+        List<List<InventoryBatch.Change>> byProduct = batch.byProduct();
+        // Ascending stripe order, so batches never wait for each other in a cycle
+        TreeMap<Integer, List<List<InventoryBatch.Change>>> byStripe = new TreeMap<>();
+        for (List<InventoryBatch.Change> changes : byProduct) {
+            byStripe.computeIfAbsent(stripeIndex(changes.get(0).id), stripe -> new ArrayList<>()).add(changes);
+        }
+        List<Lock> locked = new ArrayList<>(byStripe.size());
+        try {
+            for (int stripe : byStripe.keySet()) {
+                Lock lock = stripes[stripe].writeLock();
+                lock.lock();
+                locked.add(lock);
+            }
+            // Nothing else changes these products now, so they can be read as they are
+            List<List<InventoryBatch.Net>> netsByStripe = new ArrayList<>(byStripe.size());
+            int missing = 0;
+            for (List<List<InventoryBatch.Change>> stripe : byStripe.values()) {
+                List<InventoryBatch.Net> nets = new ArrayList<>(stripe.size());
+                for (List<InventoryBatch.Change> changes : stripe) {
+                    int id = changes.get(0).id;
+                    InventoryBatch.Net net = InventoryBatch.net(id, products.get(id), changes);
+                    nets.add(net);
+                    missing += net.missing;
+                }
+                netsByStripe.add(nets);
+            }
+            Stream<List<InventoryBatch.Net>> stream = netsByStripe.stream();
+            if (byProduct.size() >= PARALLEL_BATCH && netsByStripe.size() > 1) stream = stream.parallel();
+            stream.forEach(nets -> {
+                for (InventoryBatch.Net net : nets) {
+                    products.compute(net.id, (id, existing) -> {
+                        Product result = resultOf(net);
+                        if (!net.unchanged()) changed(id, result);
+                        settled(net, result);
+                        return result;
+                    });
+                }
+            });
+            if (missing > 0) logger.warn(missing + " changes in the batch skipped, product not found");
+        } finally {
+            for (int i = locked.size() - 1; i >= 0; i--) {
+                locked.get(i).unlock();
+            }
+        }
+    }
+
+    // What the map should hold for the net's id after the batch, null for nothing; touches nothing
+    private static Product resultOf(InventoryBatch.Net net) {
+        if (net.result == null) return null;
+        if (net.result != net.current || net.fieldsChanged()) return new Product(net.id, net.name, net.price, net.quantity);
+        if (net.quantity != net.current.getQuantity()) return withQuantity(net.current, net.quantity);
+        return net.current;
+    }
+
+    // Like Inventory.settle for the stored product going from net.current to result: moves it in the indexes and
+    // publishes the change
+    private void settled(InventoryBatch.Net net, Product result) {
+        Product current = net.current;
+        if (current != null && net.result != current) {
+            indexRemoved(current);
+            publishRemoved(current);
+        }
+        if (result == null || result == current) return;
+        if (net.result != current) {
+            indexAdded(result);
+            publishAdded(result);
+        } else if (net.fieldsChanged()) {
+            indexRemoved(current);
+            indexAdded(result);
+            publishChanged(result, current.getPrice(), current.getQuantity());
+        } else {
+            quantityChanged(current, result);
+        }
+    }
+
+    @Override
+    public int getQuantity(int id) {
+        Product product = products.get(id);
+        return product == null ? 0 : product.getQuantity();
+    }
+
+    @Override
+    List<Product> products() {
+        return new ArrayList<>(products.values());
+    }
+
+    // Each product is added under its lock, so a change racing with the fill is either seen here or applied to the
+    // index after
+    @Override
+    void fill(SortedIndex index) {
+        for (Integer id : products.keySet()) {
+            products.computeIfPresent(id, (key, existing) -> {
+                index.add(existing);
+                return existing;
+            });
+        }
+    }
+
+    // The products as they are now: an index may hold an older value of a product, and one deleted after the index
+    // found it is left out. A query that met a product at both its old and new place returns it once
+    @Override
+    List<Product> read(List<Product> found) {
+        List<Product> current = new ArrayList<>(found.size());
+        Set<Integer> seen = found.size() > 1 ? new HashSet<>() : null;
+        for (Product product : found) {
+            Product stored = products.get(product.getId());
+            if (stored != null && (seen == null || seen.add(stored.getId()))) current.add(stored);
+        }
+        return current;
+    }
+
+    // Called under the product's lock for each change to it, before the change is indexed or published, with the
+    // product as it will be stored, or null for a removal. If it throws, the change isn't made
+    void changed(int id, Product product) {
+    }
+
+    // Puts products into the map and indexes as they are, without publishing events or calling changed; for
+    // filling the inventory before anyone else can reach it
+    final void load(Collection<Product> loaded) {
+        for (Product product : loaded) {
+            products.put(product.getId(), product);
+            indexAdded(product);
+        }
+    }
+
+    private static Product withQuantity(Product existing, int quantity) {
+        return new Product(existing.getId(), existing.getName(), existing.getPrice(), quantity);
+    }
+
+    // Only the quantity index has to move a product whose stock changed
+    private void quantityChanged(Product existing, Product updated) {
+        SortedIndex byQuantity = sortedIndexes.get(SortBy.QUANTITY);
+        if (byQuantity != null) {
+            byQuantity.remove(existing);
+            byQuantity.add(updated);
+        }
+        publishChanged(updated, existing.getPrice(), existing.getQuantity());
+    }
+
+    private static Product copyOf(Product product) {
+        return new Product(product.getId(), product.getName(), product.getPrice(), product.getQuantity());
+    }
+
+    // Runs change on the product under its lock; a null result removes it. False if the product isn't in the inventory
+    private boolean apply(int id, UnaryOperator<Product> change) {
+        boolean[] found = new boolean[1];
+        Lock lock = stripeOf(id).readLock();
+        lock.lock();
+        try {
+            products.computeIfPresent(id, (key, existing) -> {
+                found[0] = true;
+                return change.apply(existing);
+            });
+        } finally {
+            lock.unlock();
+        }
+        return found[0];
+    }
+
+    private ReentrantReadWriteLock stripeOf(int id) {
+        return stripes[stripeIndex(id)];
+    }
+
+    private static int stripeIndex(int id) {
+        return IntProductMap.hash(id) & (STRIPES - 1);
+    }
+}
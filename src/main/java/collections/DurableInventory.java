@@ -0,0 +1,119 @@
+package collections;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// ConcurrentInventory whose stock survives a restart. Each change is written to an InventoryLog under the product's
+// lock, and the change method returns once the log has it on disk; concurrent writers share their syncs through
+// the log's group commit. A snapshot is taken every interval, and on close, so reopening the directory only
+// replays the changes made since the last one. If the log can't be written the change that hit the error isn't
+// made; it and every later change throw UncheckedIOException
+class DurableInventory extends ConcurrentInventory implements Closeable {
+    private static final Logger logger = LogManager.getLogger();
+
+    private final InventoryLog log;
+    private final ScheduledExecutorService timer;
+
+    // Loads the inventory saved in directory, if any
+    public DurableInventory(Path directory, long snapshotIntervalMillis, int logBytes) throws IOException {
+        if (snapshotIntervalMillis <= 0) throw new IllegalArgumentException("Invalid snapshot interval");
+        Map<Integer, Product> recovered = new HashMap<>();
+        this.log = new InventoryLog(directory, logBytes, recovered);
+        load(recovered.values());
+
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inventory-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException | RuntimeException e) {
+                logger.error("Inventory snapshot failed : " + e.getMessage());
+            }
+        }, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public DurableInventory(Path directory) throws IOException {
+        this(directory, 60_000, 64 * 1024 * 1024);
+    }
+
+    @Override
+    public void addProduct(Product product) {
+        super.addProduct(product);
+        sync();
+    }
+
+    @Override
+    public void removeProduct(Product product) {
+        super.removeProduct(product);
+        sync();
+    }
+
+    @Override
+    public void deleteProduct(Product product) {
+        super.deleteProduct(product);
+        sync();
+    }
+
+    @Override
+    public void updateProduct(Product product, String newName, double newPrice, int newQuantity) {
+        super.updateProduct(product, newName, newPrice, newQuantity);
+        sync();
+    }
+
+    @Override
+    public void restockProduct(Product product, int additionalQuantity) {
+        super.restockProduct(product, additionalQuantity);
+        sync();
+    }
+
+    // The whole batch is logged, then synced once
+    @Override
+    public void applyBatch(InventoryBatch batch) {
+        super.applyBatch(batch);
+        sync();
+    }
+
+    @Override
+    void changed(int id, Product product) {
+        if (product == null) log.removed(id);
+        else log.stored(product);
+    }
+
+    // Writes the current stock to a new snapshot and drops the log it replaces
+    public void snapshot() throws IOException {
+        log.snapshot(this::products);
+    }
+
+    // Syncs reaching the disk so far, for comparing with the number of changes
+    long syncs() {
+        return log.syncs();
+    }
+
+    // Takes a final snapshot so the next start has nothing to replay; later changes fail
+    @Override
+    public void close() throws IOException {
+        timer.shutdownNow();
+        try {
+            snapshot();
+        } finally {
+            log.close();
+            events.close();
+        }
+    }
+
+    private void sync() {
+        log.sync();
+    }
+}
@@ -0,0 +1,110 @@
+package collections;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Durable order traffic: every thread restocks and sells one unit of random products on a DurableInventory, each
+// change returning only once it is on disk. Reports changes per second and per sync at 1, 4, 16... threads, then
+// abandons the last inventory without closing it, as if the process had died, reopens the directory and checks
+// that every change survived.
+//
+// Usage: DurableInventoryBenchmark [products=10000] [operationsPerThread=5000] [maxThreads=64] [directory=temp]
+public class DurableInventoryBenchmark {
+    private static final Logger logger = LogManager.getLogger();
+    private static final int INITIAL_QUANTITY = 1_000_000_000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int productCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int operationsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        Path root = args.length > 3 ? Paths.get(args[3]) : Files.createTempDirectory("inventory-benchmark");
+
+        logger.info(String.format("%d products, %d operations per thread, log in %s", productCount, operationsPerThread, root));
+        logger.info(String.format("%7s %14s %14s", "threads", "changes/sec", "changes/sync"));
+        DurableInventory inventory = null;
+        long[] expected = null;
+        Path directory = null;
+        for (int threads = 1; threads <= maxThreads; threads *= 4) {
+            if (inventory != null) inventory.close();
+            directory = root.resolve("threads-" + threads);
+            inventory = new DurableInventory(directory);
+            expected = run(inventory, productCount, operationsPerThread, threads);
+        }
+
+        // The last inventory is left open: its log has no final snapshot
+        long start = System.nanoTime();
+        try (DurableInventory recovered = new DurableInventory(directory)) {
+            long recoveryNanos = System.nanoTime() - start;
+            long lost = 0;
+            for (int id = 0; id < productCount; id++) {
+                lost += Math.abs(expected[id] - recovered.getQuantity(id));
+            }
+            logger.info(String.format("Recovered %d products in %.1f ms, %d changes lost", productCount,
+                    recoveryNanos / 1e6, lost));
+        }
+    }
+
+    // Quantities each product should have afterwards
+    private static long[] run(DurableInventory inventory, int productCount, int operationsPerThread, int threadCount)
+            throws InterruptedException {
+        List<Product> products = new ArrayList<>(productCount);
+        for (int id = 0; id < productCount; id++) {
+            Product product = new Product(id, "Product " + id, 10.0, INITIAL_QUANTITY);
+            products.add(product);
+            inventory.addProduct(product);
+        }
+        long syncsBefore = inventory.syncs();
+
+        long[][] changes = new long[threadCount][productCount];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            long[] change = changes[t];
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < operationsPerThread; i++) {
+                    int id = random.nextInt(productCount);
+                    boolean restock = random.nextBoolean();
+                    if (restock) inventory.restockProduct(products.get(id), 1);
+                    else inventory.removeProduct(products.get(id));
+                    change[id] += restock ? 1 : -1;
+                }
+            }, "durable-benchmark-" + t);
+            threads.add(thread);
+            thread.start();
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        long[] expected = new long[productCount];
+        for (int id = 0; id < productCount; id++) {
+            expected[id] = INITIAL_QUANTITY;
+            for (long[] change : changes) {
+                expected[id] += change[id];
+            }
+        }
+        long operations = (long) operationsPerThread * threadCount;
+        logger.info(String.format("%7d %14.0f %14.1f", threadCount, operations * 1e9 / elapsedNanos,
+                operations / (double) Math.max(1, inventory.syncs() - syncsBefore)));
+        return expected;
+    }
+}
@@ -0,0 +1,167 @@
+package collections;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Open-addressing hash table from int product id to Product. Ids sit in a plain int[] next to a Product[] of the
+// same length, so an entry costs about 8 bytes / load factor instead of a HashMap node plus a boxed Integer (~48
+// bytes), and lookups allocate nothing. Collisions probe linearly; removal shifts the following entries of the
+// probe run back instead of leaving tombstones, so lookups never slow down after many deletes. Not thread safe
+class IntProductMap implements ProductStore {
+    // Ids are never negative, so -1 marks a free slot
+    private static final int FREE = -1;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private int[] ids;
+    private Product[] products;
+    private int mask;
+    private int size;
+    private int resizeAt;
+    private int modCount;
+
+    IntProductMap() {
+        this(16);
+    }
+
+    IntProductMap(int expectedSize) {
+        if (expectedSize < 0) throw new IllegalArgumentException("Expected size cannot be negative");
+        allocate(capacityFor(expectedSize));
+    }
+
+    @Override
+    public Product get(int id) {
+        int slot = slotOf(id);
+        return slot < 0 ? null : products[slot];
+    }
+
+    @Override
+    public boolean containsKey(int id) {
+        return slotOf(id) >= 0;
+    }
+
+    @Override
+    public Product put(Product product) {
+        int id = product.getId();
+        if (id < 0) throw new IllegalArgumentException("ID cannot be negative");
+        for (int slot = hash(id) & mask; ; slot = (slot + 1) & mask) {
+            if (ids[slot] == id) {
+                Product previous = products[slot];
+                products[slot] = product;
+                return previous;
+            }
+            if (ids[slot] == FREE) {
+                ids[slot] = id;
+                products[slot] = product;
+                modCount++;
+                if (++size > resizeAt) resize(ids.length * 2);
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public Product remove(int id) {
+        int slot = slotOf(id);
+        if (slot < 0) return null;
+        Product removed = products[slot];
+        shiftBack(slot);
+        size--;
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Slot holding id, or -1
+    private int slotOf(int id) {
+        if (id < 0) return -1;
+        for (int slot = hash(id) & mask; ; slot = (slot + 1) & mask) {
+            int current = ids[slot];
+            if (current == id) return slot;
+            if (current == FREE) return -1;
+        }
+    }
+
+    // Empties slot, then moves back every later entry of the run that would otherwise become unreachable
+    private void shiftBack(int slot) {
+        int free = slot;
+        for (int next = (slot + 1) & mask; ids[next] != FREE; next = (next + 1) & mask) {
+            int home = hash(ids[next]) & mask;
+            // The entry at next may move into free only if its home slot isn't cyclically in (free, next]
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                ids[free] = ids[next];
+                products[free] = products[next];
+                free = next;
+            }
+        }
+        ids[free] = FREE;
+        products[free] = null;
+    }
+
+    private void resize(int capacity) {
+        if (capacity > MAX_CAPACITY) throw new IllegalStateException("Product map is full");
+        int[] oldIds = ids;
+        Product[] oldProducts = products;
+        allocate(capacity);
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] == FREE) continue;
+            int slot = hash(oldIds[i]) & mask;
+            while (ids[slot] != FREE) slot = (slot + 1) & mask;
+            ids[slot] = oldIds[i];
+            products[slot] = oldProducts[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        ids = new int[capacity];
+        Arrays.fill(ids, FREE);
+        products = new Product[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1;
+        if (needed > MAX_CAPACITY) throw new IllegalArgumentException("Too many products: " + expectedSize);
+        return Math.max(16, Integer.highestOneBit((int) needed - 1) << 1);
+    }
+
+    // Sequential ids would otherwise fill consecutive slots and make long probe runs at the first collision
+    static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public Iterator<Product> iterator() {
+        return new Iterator<Product>() {
+            private final int expectedModCount = modCount;
+            private int next = advance(0);
+
+            private int advance(int from) {
+                while (from < ids.length && ids[from] == FREE) from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < ids.length;
+            }
+
+            @Override
+            public Product next() {
+                if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                if (next >= ids.length) throw new NoSuchElementException();
+                Product product = products[next];
+                next = advance(next + 1);
+                return product;
+            }
+        };
+    }
+}
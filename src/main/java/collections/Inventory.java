@@ -0,0 +1,314 @@
+package collections;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+class Inventory {
+    static final Logger logger = LogManager.getLogger();
+    // Products by their ID, in a HashMap unless another StorageType is chosen
+    final ProductStore inventory;
+    // Kept up to date by every change made through the inventory
+    final NameIndex names = new NameIndex();
+    // Sorted indexes built so far. One is built the first time a query needs it, then kept up to date like names
+    final Map<SortBy, SortedIndex> sortedIndexes = new ConcurrentHashMap<>();
+    // Price and stock changes for subscribers
+    final InventoryEvents events = new InventoryEvents();
+
+    public Inventory() {
+        this(StorageType.HASH_MAP);
+    }
+
+    public Inventory(StorageType storage) {
+        this(storage.create());
+    }
+
+    // For subclasses that need a different store, e.g. a concurrent one
+    Inventory(ProductStore inventory) {
+        this.inventory = inventory;
+    }
+
+    public void addProduct(Product product) {
+        //product already exists then increment product count by 1;
+        Product existingProduct = inventory.get(product.getId());
+        if (existingProduct != null) {
+            changeQuantity(existingProduct, existingProduct.getQuantity() + 1);
+        } else {
+            inventory.put(product);
+            indexAdded(product);
+            publishAdded(product);
+        }
+    }
+
+    public void removeProduct(Product product) {
+        Product existingProduct = inventory.get(product.getId());
+        if (existingProduct != null) {
+            if (existingProduct.getQuantity() > 1) changeQuantity(existingProduct, existingProduct.getQuantity() - 1);
+            else {
+                inventory.remove(product.getId());
+                indexRemoved(existingProduct);
+                publishRemoved(existingProduct);
+            }
+        } else {
+            logger.warn("Product not found");
+        }
+    }
+
+    public void deleteProduct(Product product) {
+        Product removedProduct = inventory.remove(product.getId());
+        if (removedProduct != null) {
+            indexRemoved(removedProduct);
+            publishRemoved(removedProduct);
+        } else {
+            logger.warn("Product not found");
+        }
+    }
+
+    public void updateProduct(Product product, String newName, double newPrice, int newQuantity) {
+        Product existingProduct = inventory.get(product.getId());
+        if (existingProduct != null) {
+            double oldPrice = existingProduct.getPrice();
+            int oldQuantity = existingProduct.getQuantity();
+            indexRemoved(existingProduct);
+            try {
+                existingProduct.setName(newName);
+                existingProduct.setPrice(newPrice);
+                existingProduct.setQuantity(newQuantity);
+            } finally {
+                indexAdded(existingProduct);
+                publishChanged(existingProduct, oldPrice, oldQuantity);
+            }
+        } else {
+            logger.warn("Product not found");
+        }
+    }
+
+    // Applies every change in the batch, or none: a change that would fail throws IllegalArgumentException before
+    // any product is touched. Each product is looked up and updated once, with the net result of its changes
+    public void applyBatch(InventoryBatch batch) {
+        List<List<InventoryBatch.Change>> byProduct = batch.byProduct();
+        List<InventoryBatch.Net> nets = new ArrayList<>(byProduct.size());
+        for (List<InventoryBatch.Change> changes : byProduct) {
+            int id = changes.get(0).id;
+            nets.add(InventoryBatch.net(id, inventory.get(id), changes));
+        }
+        int missing = 0;
+        for (InventoryBatch.Net net : nets) {
+            Product result = settle(net);
+            if (result == null) {
+                if (net.current != null) inventory.remove(net.id);
+            } else if (result != net.current) {
+                inventory.put(result);
+            }
+            missing += net.missing;
+        }
+        if (missing > 0) logger.warn(missing + " changes in the batch skipped, product not found");
+    }
+
+    // Brings a product's fields and indexes to the batch's result for it, and returns what the store should hold
+    // for its id afterwards, null for nothing
+    Product settle(InventoryBatch.Net net) {
+        Product current = net.current;
+        Product result = net.result;
+        if (current != null && result != current) {
+            indexRemoved(current);
+            publishRemoved(current);
+        }
+        if (result == null) return null;
+        if (result != current) {
+            result.setName(net.name);
+            result.setPrice(net.price);
+            result.setQuantity(net.quantity);
+            indexAdded(result);
+            publishAdded(result);
+        } else if (net.fieldsChanged()) {
+            double oldPrice = current.getPrice();
+            int oldQuantity = current.getQuantity();
+            indexRemoved(current);
+            current.setName(net.name);
+            current.setPrice(net.price);
+            current.setQuantity(net.quantity);
+            indexAdded(current);
+            publishChanged(current, oldPrice, oldQuantity);
+        } else if (net.quantity != current.getQuantity()) {
+            changeQuantity(current, net.quantity);
+        }
+        return result;
+    }
+
+    // Products to list or sort; a copy, so sorting doesn't depend on the store
+    List<Product> products() {
+        List<Product> products = new ArrayList<>(inventory.size());
+        for (Product product : inventory) {
+            products.add(product);
+        }
+        return products;
+    }
+
+    // Call after a product is stored, and after changing a stored product's fields
+    void indexAdded(Product product) {
+        names.add(product);
+        for (SortedIndex index : sortedIndexes.values()) {
+            index.add(product);
+        }
+    }
+
+    // Call after a product is removed from the store, and before changing a stored product's fields
+    void indexRemoved(Product product) {
+        names.remove(product);
+        for (SortedIndex index : sortedIndexes.values()) {
+            index.remove(product);
+        }
+    }
+
+    // Sets a stored product's quantity; only the quantity index has to move it
+    void changeQuantity(Product product, int quantity) {
+        int oldQuantity = product.getQuantity();
+        SortedIndex byQuantity = sortedIndexes.get(SortBy.QUANTITY);
+        if (byQuantity == null) {
+            product.setQuantity(quantity);
+        } else {
+            byQuantity.remove(product);
+            try {
+                product.setQuantity(quantity);
+            } finally {
+                byQuantity.add(product);
+            }
+        }
+        publishChanged(product, product.getPrice(), oldQuantity);
+    }
+
+    // Call after storing a new product; the publish helpers only build an event if someone subscribed
+    void publishAdded(Product product) {
+        if (events.active()) events.publish(InventoryEvent.added(product));
+    }
+
+    // Call after a product is removed from the store
+    void publishRemoved(Product product) {
+        if (events.active()) events.publish(InventoryEvent.removed(product));
+    }
+
+    // Call after changing a stored product; nothing is published unless its price or quantity differ
+    void publishChanged(Product product, double oldPrice, int oldQuantity) {
+        if (!events.active()) return;
+        if (Double.compare(oldPrice, product.getPrice()) == 0 && oldQuantity == product.getQuantity()) return;
+        events.publish(InventoryEvent.changed(product, oldPrice, oldQuantity));
+    }
+
+    // Price and stock changes as they happen, for reacting to them instead of rescanning the products. Use
+    // events().subscribeLowStock for low-stock alerts
+    public InventoryEvents events() {
+        return events;
+    }
+
+    SortedIndex sortedIndex(SortBy sortBy) {
+        SortedIndex index = sortedIndexes.get(sortBy);
+        if (index != null && index.filled) return index;
+        synchronized (sortedIndexes) {
+            index = sortedIndexes.get(sortBy);
+            if (index == null) {
+                index = new SortedIndex(sortBy);
+                // Registered before it is filled, so changes made meanwhile reach it too
+                sortedIndexes.put(sortBy, index);
+                fill(index);
+                index.filled = true;
+            }
+            return index;
+        }
+    }
+
+    // Adds every stored product to a new index
+    void fill(SortedIndex index) {
+        for (Product product : inventory) {
+            index.add(product);
+        }
+    }
+
+    public void displayAllProducts() {
+        displayAllProducts(SortBy.ID);
+    }
+
+    public void displayAllProducts(SortBy sortedBy) {
+        for (Product product : read(sortedIndex(sortedBy).all())) {
+            logger.debug(product);
+        }
+    }
+
+    // Products priced from min to max, both included, cheapest first
+    public List<Product> findProductsByPriceRange(double min, double max) {
+        return read(sortedIndex(SortBy.PRICE).range(min, max));
+    }
+
+    // Products with fewer than threshold units in stock, lowest stock first
+    public List<Product> findProductsBelowQuantity(int threshold) {
+        return read(sortedIndex(SortBy.QUANTITY).below(threshold));
+    }
+
+    // The k products with the highest sortedBy values, highest first
+    public List<Product> topProducts(SortBy sortedBy, int k) {
+        return read(sortedIndex(sortedBy).top(k));
+    }
+
+    // One page of products in ascending sortedBy order. Pass null for the first page, then each page's getNext()
+    // until it returns null
+    public SortedIndex.Page listProducts(SortBy sortedBy, SortedIndex.Cursor after, int pageSize) {
+        SortedIndex.Page page = sortedIndex(sortedBy).page(after, pageSize);
+        return new SortedIndex.Page(read(page.getProducts()), page.getNext());
+    }
+
+    public void findProductByName(String name) {
+        for (Product product : findProductsByName(name)) {
+            logger.debug(product);
+        }
+    }
+
+    // Products named name, ignoring case
+    public List<Product> findProductsByName(String name) {
+        return read(names.named(name));
+    }
+
+    // Products whose name starts with prefix, ignoring case, ordered by name
+    public List<Product> findProductsByPrefix(String prefix) {
+        return read(names.withPrefix(prefix));
+    }
+
+    // Up to limit product names starting with prefix, ignoring case, ordered by name
+    public List<String> autocomplete(String prefix, int limit) {
+        return names.complete(prefix, limit);
+    }
+
+    // What a query hands out for products found through an index; the products themselves here
+    List<Product> read(List<Product> products) {
+        return products;
+    }
+
+    // Check if product exists by ID
+    public boolean checkProductExists(int id) {
+        return inventory.containsKey(id);
+    }
+
+    // Quantity in stock, 0 for a product that isn't in the inventory
+    public int getQuantity(int id) {
+        Product product = inventory.get(id);
+        return product == null ? 0 : product.getQuantity();
+    }
+
+    public void listAllProductNames() {
+        for (String name : names.names()) {
+            logger.debug(name);
+        }
+    }
+
+    // Restock a product (add quantity)
+    public void restockProduct(Product product, int additionalQuantity) {
+        Product existingProduct = inventory.get(product.getId());
+        if (existingProduct != null) {
+            changeQuantity(existingProduct, existingProduct.getQuantity() + additionalQuantity);
+        } else {
+            logger.warn("Product Not Found");
+        }
+    }
+
+}
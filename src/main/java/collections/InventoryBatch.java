@@ -0,0 +1,170 @@
+package collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+// Changes for Inventory.applyBatch. Each method records the same change as the Inventory method of the same name,
+// and the batch applies them as if those were called in the order recorded. The changes are grouped by product id
+// and each product's changes are netted into its final state first, so a product is looked up and updated once
+// however many lines of the batch touch it, and a change that would fail rejects the batch before anything is applied
+class InventoryBatch {
+    enum Kind {
+        ADD, REMOVE, DELETE, UPDATE, RESTOCK
+    }
+
+    static final class Change {
+        private final Kind kind;
+        final int id;
+        // The product to store, for ADD
+        private final Product product;
+        private final String name;
+        private final double price;
+        // New quantity for UPDATE, added quantity for RESTOCK
+        private final int quantity;
+
+        private Change(Kind kind, int id, Product product, String name, double price, int quantity) {
+            this.kind = kind;
+            this.id = id;
+            this.product = product;
+            this.name = name;
+            this.price = price;
+            this.quantity = quantity;
+        }
+    }
+
+    // What one product ends up as after the batch's changes to it
+    static final class Net {
+        final int id;
+        // Stored before the batch, or null
+        final Product current;
+        // To store afterwards, current or a product added by the batch; null if the product ends up removed
+        final Product result;
+        final String name;
+        final double price;
+        final int quantity;
+        // Changes skipped because the product wasn't in the inventory at that point
+        final int missing;
+
+        private Net(int id, Product current, Product result, String name, double price, int quantity, int missing) {
+            this.id = id;
+            this.current = current;
+            this.result = result;
+            this.name = name;
+            this.price = price;
+            this.quantity = quantity;
+            this.missing = missing;
+        }
+
+        // Whether the name or price differ from current's, so indexes on them have to move the product
+        boolean fieldsChanged() {
+            return !Objects.equals(name, current.getName()) || Double.compare(price, current.getPrice()) != 0;
+        }
+
+        // Whether the product ends up as it was; only meaningful before the net is applied
+        boolean unchanged() {
+            return result == current && (current == null || !fieldsChanged() && quantity == current.getQuantity());
+        }
+    }
+
+    private final List<Change> changes = new ArrayList<>();
+
+    // Stores product, or adds one unit to the stock of the product with its id
+    public void addProduct(Product product) {
+        changes.add(new Change(Kind.ADD, product.getId(), product, null, 0, 0));
+    }
+
+    // Takes one unit out of stock, removing the product when it has one left
+    public void removeProduct(Product product) {
+        changes.add(new Change(Kind.REMOVE, product.getId(), null, null, 0, 0));
+    }
+
+    public void deleteProduct(Product product) {
+        changes.add(new Change(Kind.DELETE, product.getId(), null, null, 0, 0));
+    }
+
+    public void updateProduct(Product product, String newName, double newPrice, int newQuantity) {
+        changes.add(new Change(Kind.UPDATE, product.getId(), null, newName, newPrice, newQuantity));
+    }
+
+    public void restockProduct(Product product, int additionalQuantity) {
+        changes.add(new Change(Kind.RESTOCK, product.getId(), null, null, 0, additionalQuantity));
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    // The changes grouped by product id in ascending id order, each product's in the order they were recorded.
+    // Sorting (id, position) pairs packed into longs needs no map or list per product, and leaves each id range in
+    // one run of groups
+    List<List<Change>> byProduct() {
+        long[] keys = new long[changes.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (long) changes.get(i).id << 32 | i;
+        }
+        Arrays.sort(keys);
+        List<Change> sorted = new ArrayList<>(keys.length);
+        for (long key : keys) {
+            sorted.add(changes.get((int) key));
+        }
+        List<List<Change>> groups = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= sorted.size(); i++) {
+            if (i == sorted.size() || sorted.get(i).id != sorted.get(start).id) {
+                groups.add(sorted.subList(start, i));
+                start = i;
+            }
+        }
+        return groups;
+    }
+
+    // Runs a product's changes over its stored state, current or null, without touching it. Throws
+    // IllegalArgumentException for a change the single-item method would have rejected
+    static Net net(int id, Product current, List<Change> changes) {
+        Product result = current;
+        String name = current == null ? null : current.getName();
+        double price = current == null ? 0 : current.getPrice();
+        long quantity = current == null ? 0 : current.getQuantity();
+        int missing = 0;
+        for (Change change : changes) {
+            if (result == null && change.kind != Kind.ADD) {
+                missing++;
+                continue;
+            }
+            switch (change.kind) {
+                case ADD:
+                    if (result != null) {
+                        quantity++;
+                    } else {
+                        result = change.product;
+                        name = result.getName();
+                        price = result.getPrice();
+                        quantity = result.getQuantity();
+                    }
+                    break;
+                case REMOVE:
+                    if (quantity > 1) quantity--;
+                    else result = null;
+                    break;
+                case DELETE:
+                    result = null;
+                    break;
+                case UPDATE:
+                    if (change.price < 0) throw new IllegalArgumentException("Product " + id + ": Price cannot be negative");
+                    name = change.name;
+                    price = change.price;
+                    quantity = change.quantity;
+                    break;
+                default:
+                    quantity += change.quantity;
+                    break;
+            }
+            // Checked after every change, as each single-item call would
+            if (quantity < 0) throw new IllegalArgumentException("Product " + id + ": Quantity cannot be negative");
+            if (quantity > Integer.MAX_VALUE) throw new IllegalArgumentException("Product " + id + ": Quantity overflow");
+        }
+        return new Net(id, current, result, name, price, (int) quantity, missing);
+    }
+}
@@ -0,0 +1,110 @@
+package collections;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Compares concurrent order traffic on ConcurrentInventory against the plain Inventory behind one global lock, at
+// 1, 2, 4... threads up to the core count (at least 4). Every thread restocks and sells one unit of random products;
+// afterwards each product's quantity must equal its starting stock plus its restocks minus its sales, any difference
+// is an update that was lost. The plain Inventory without a lock is run too, to show it losing updates. The
+// "indexed" runs build the name, price and quantity indexes first, so every stock change also moves its product in
+// the quantity index.
+//
+// Usage: InventoryBenchmark [products=10000] [operationsPerThread=2000000] [maxThreads=cores]
+public class InventoryBenchmark {
+    private static final Logger logger = LogManager.getLogger();
+    private static final int INITIAL_QUANTITY = 1_000_000_000;
+
+    private interface Operation {
+        void run(Inventory inventory, Product product, boolean restock);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int productCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int operationsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Math.max(4, Runtime.getRuntime().availableProcessors());
+
+        Operation unlocked = (inventory, product, restock) -> {
+            if (restock) inventory.restockProduct(product, 1);
+            else inventory.removeProduct(product);
+        };
+        Operation globalLock = (inventory, product, restock) -> {
+            synchronized (inventory) {
+                unlocked.run(inventory, product, restock);
+            }
+        };
+
+        logger.info(String.format("%d products, %d operations per thread, %d cores",
+                productCount, operationsPerThread, Runtime.getRuntime().availableProcessors()));
+        logger.info(String.format("%-32s %7s %14s %12s", "inventory", "threads", "ops/sec", "lost updates"));
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            run("ConcurrentInventory", new ConcurrentInventory(), unlocked, false, productCount, operationsPerThread, threads);
+            run("ConcurrentInventory, indexed", new ConcurrentInventory(), unlocked, true, productCount, operationsPerThread, threads);
+            run("Inventory, global lock", new Inventory(), globalLock, false, productCount, operationsPerThread, threads);
+            run("Inventory, global lock, indexed", new Inventory(), globalLock, true, productCount, operationsPerThread, threads);
+            run("Inventory, no lock (unsafe)", new Inventory(), unlocked, false, productCount, operationsPerThread, threads);
+        }
+    }
+
+    private static void run(String name, Inventory inventory, Operation operation, boolean indexed, int productCount,
+                            int operationsPerThread, int threadCount) throws InterruptedException {
+        List<Product> products = new ArrayList<>(productCount);
+        for (int id = 0; id < productCount; id++) {
+            Product product = new Product(id, "Product " + id, 10.0, INITIAL_QUANTITY);
+            products.add(product);
+            inventory.addProduct(product);
+        }
+        if (indexed) {
+            // Each query builds the index it needs; names are indexed from the start
+            inventory.findProductsByPriceRange(0, 0);
+            inventory.findProductsBelowQuantity(0);
+        }
+
+        // Net change each thread made to each product
+        long[][] changes = new long[threadCount][productCount];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            long[] change = changes[t];
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < operationsPerThread; i++) {
+                    int id = random.nextInt(productCount);
+                    boolean restock = random.nextBoolean();
+                    operation.run(inventory, products.get(id), restock);
+                    change[id] += restock ? 1 : -1;
+                }
+            }, "inventory-benchmark-" + t);
+            threads.add(thread);
+            thread.start();
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        long lost = 0;
+        for (int id = 0; id < productCount; id++) {
+            long expected = INITIAL_QUANTITY;
+            for (long[] change : changes) {
+                expected += change[id];
+            }
+            lost += Math.abs(expected - inventory.getQuantity(id));
+        }
+        double operationsPerSecond = (double) operationsPerThread * threadCount * 1_000_000_000L / elapsedNanos;
+        logger.info(String.format("%-32s %7d %14.0f %12d", name, threadCount, operationsPerSecond, lost));
+    }
+}
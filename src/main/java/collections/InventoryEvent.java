@@ -0,0 +1,96 @@
+package collections;
+
+// A change to one product's price or stock, as published by InventoryEvents: its values before and after. A new
+// product has no values before (added), a removed one none after (removed). Rapid changes to one product that a
+// subscriber hasn't taken yet are merged into one event, from the first change's before to the last one's after
+class InventoryEvent {
+    private final int id;
+    private final String name;
+    private final double oldPrice;
+    private final int oldQuantity;
+    private final double price;
+    private final int quantity;
+    private final boolean added;
+    private final boolean removed;
+
+    private InventoryEvent(int id, String name, double oldPrice, int oldQuantity, double price, int quantity,
+                           boolean added, boolean removed) {
+        this.id = id;
+        this.name = name;
+        this.oldPrice = oldPrice;
+        this.oldQuantity = oldQuantity;
+        this.price = price;
+        this.quantity = quantity;
+        this.added = added;
+        this.removed = removed;
+    }
+
+    static InventoryEvent added(Product product) {
+        return new InventoryEvent(product.getId(), product.getName(), 0, 0, product.getPrice(), product.getQuantity(), true, false);
+    }
+
+    static InventoryEvent removed(Product product) {
+        return new InventoryEvent(product.getId(), product.getName(), product.getPrice(), product.getQuantity(), 0, 0, false, true);
+    }
+
+    // product holds the values after the change
+    static InventoryEvent changed(Product product, double oldPrice, int oldQuantity) {
+        return new InventoryEvent(product.getId(), product.getName(), oldPrice, oldQuantity, product.getPrice(),
+                product.getQuantity(), false, false);
+    }
+
+    // older followed by newer as one event; null if together they change nothing
+    static InventoryEvent merge(InventoryEvent older, InventoryEvent newer) {
+        if (older.added && newer.removed) return null;
+        InventoryEvent merged = new InventoryEvent(older.id, newer.name, older.oldPrice, older.oldQuantity, newer.price,
+                newer.quantity, older.added, newer.removed);
+        if (!merged.added && !merged.removed && Double.compare(merged.oldPrice, merged.price) == 0
+                && merged.oldQuantity == merged.quantity) {
+            return null;
+        }
+        return merged;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // 0 for an added product
+    public double getOldPrice() {
+        return oldPrice;
+    }
+
+    // 0 for an added product
+    public int getOldQuantity() {
+        return oldQuantity;
+    }
+
+    // 0 for a removed product
+    public double getPrice() {
+        return price;
+    }
+
+    // 0 for a removed product
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public boolean isAdded() {
+        return added;
+    }
+
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    @Override
+    public String toString() {
+        if (added) return "Product ID: " + id + " added, Price: $" + price + ", Quantity: " + quantity;
+        if (removed) return "Product ID: " + id + " removed";
+        return "Product ID: " + id + ", Price: $" + oldPrice + " -> $" + price + ", Quantity: " + oldQuantity + " -> " + quantity;
+    }
+}
@@ -0,0 +1,204 @@
+package collections;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Flow;
+import java.util.function.Predicate;
+
+// Publishes an Inventory's price and stock changes to Flow subscribers. Each subscription keeps at most one pending
+// event per product: a change to a product whose last event hasn't been delivered yet is merged into it, in its
+// place in the queue. So a slow subscriber gets fewer, coalesced events instead of an ever growing backlog, and the
+// inventory never waits for it: the backlog is bounded by the number of products. Events are delivered on the
+// executor, one at a time per subscription and only as far as it has requested; products whose changes cancel out
+// are dropped. publish is called under the product's lock, so a product's events stay in the order of its changes
+class InventoryEvents implements Flow.Publisher<InventoryEvent> {
+    private static final Logger logger = LogManager.getLogger();
+
+    private final Executor executor;
+    private final List<EventSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    InventoryEvents(Executor executor) {
+        this.executor = executor;
+    }
+
+    InventoryEvents() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    // Every change
+    @Override
+    public void subscribe(Flow.Subscriber<? super InventoryEvent> subscriber) {
+        subscribe(subscriber, event -> true);
+    }
+
+    // Alerts for products going below threshold units in stock: changes that take a product from threshold or more
+    // down below it, and new products stocked below it. Judged on the coalesced change, so a product that dips and
+    // recovers before the subscriber takes the event raises no alert
+    public void subscribeLowStock(int threshold, Flow.Subscriber<? super InventoryEvent> subscriber) {
+        subscribe(subscriber, event -> !event.isRemoved() && event.getQuantity() < threshold
+                && (event.isAdded() || event.getOldQuantity() >= threshold));
+    }
+
+    private void subscribe(Flow.Subscriber<? super InventoryEvent> subscriber, Predicate<InventoryEvent> filter) {
+        EventSubscription subscription = new EventSubscription(subscriber, filter);
+        subscriber.onSubscribe(subscription);
+        subscriptions.add(subscription);
+        // Checked after the add: a close() running meanwhile either completes it or is seen here
+        if (closed) subscription.complete();
+        // Cancelled from onSubscribe, before it was added
+        if (subscription.isDone()) subscriptions.remove(subscription);
+    }
+
+    // Whether anyone listens; lets the inventory skip building events nobody gets
+    boolean active() {
+        return !subscriptions.isEmpty();
+    }
+
+    void publish(InventoryEvent event) {
+        for (EventSubscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    // Subscribers get what is pending, then onComplete
+    void close() {
+        closed = true;
+        for (EventSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    private final class EventSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super InventoryEvent> subscriber;
+        private final Predicate<InventoryEvent> filter;
+
+        // Guarded by this
+        private final LinkedHashMap<Integer, InventoryEvent> pending = new LinkedHashMap<>();
+        private long demand;
+        private boolean draining;
+        private boolean completing;
+        private boolean done;
+        // Set by a bad request, delivered by the drain in place of anything still pending
+        private Throwable error;
+
+        private EventSubscription(Flow.Subscriber<? super InventoryEvent> subscriber, Predicate<InventoryEvent> filter) {
+            this.subscriber = subscriber;
+            this.filter = filter;
+        }
+
+        private void offer(InventoryEvent event) {
+            synchronized (this) {
+                if (done) return;
+                pending.merge(event.getId(), event, InventoryEvent::merge);
+            }
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                synchronized (this) {
+                    if (error == null) error = new IllegalArgumentException("Requested " + n + " events, must be positive");
+                }
+                schedule();
+                return;
+            }
+            synchronized (this) {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                done = true;
+                pending.clear();
+            }
+            subscriptions.remove(this);
+        }
+
+        private synchronized boolean isDone() {
+            return done;
+        }
+
+        private void complete() {
+            synchronized (this) {
+                completing = true;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            synchronized (this) {
+                if (draining || done) return;
+                // Neither an error nor completion needs demand
+                if (error == null && !(completing && pending.isEmpty()) && (demand == 0 || pending.isEmpty())) return;
+                draining = true;
+            }
+            executor.execute(this);
+        }
+
+        // Delivers pending events while there is demand; only one drain runs at a time, so every signal reaches the
+        // subscriber from it, one after another
+        @Override
+        public void run() {
+            while (true) {
+                InventoryEvent event;
+                Throwable failure = null;
+                synchronized (this) {
+                    if (done) {
+                        draining = false;
+                        return;
+                    }
+                    if (error != null) {
+                        failure = error;
+                        done = true;
+                        draining = false;
+                        pending.clear();
+                        subscriptions.remove(this);
+                        event = null;
+                    } else if (pending.isEmpty() && completing) {
+                        done = true;
+                        draining = false;
+                        subscriptions.remove(this);
+                        event = null;
+                    } else if (pending.isEmpty() || demand == 0) {
+                        draining = false;
+                        return;
+                    } else {
+                        Iterator<InventoryEvent> first = pending.values().iterator();
+                        event = first.next();
+                        first.remove();
+                        // Filtered out events don't use up demand
+                        if (filter.test(event)) demand--;
+                        else continue;
+                    }
+                }
+                try {
+                    if (failure != null) {
+                        subscriber.onError(failure);
+                        return;
+                    }
+                    if (event == null) {
+                        subscriber.onComplete();
+                        return;
+                    }
+                    subscriber.onNext(event);
+                } catch (RuntimeException e) {
+                    logger.error("Inventory event subscriber failed, cancelling it : " + e.getMessage(), e);
+                    cancel();
+                    return;
+                }
+            }
+        }
+    }
+}
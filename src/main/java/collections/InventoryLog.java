@@ -0,0 +1,454 @@
+package collections;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Write-ahead log of inventory changes. Each record holds a product's whole state after a change, or its removal,
+// so replaying the records for a product in order always ends at its last state, whatever it started from. Records
+// are copied into a memory-mapped log file; sync() makes them durable. Group commit: one waiting thread forces
+// everything appended so far to disk while the others wait, and the records appended meanwhile go together in the
+// next force, so one fsync covers as many changes as arrived during the last one.
+//
+// Files, numbered by generation N:
+//   inventory-N.snapshot  int MAGIC, byte VERSION, int count, (int id, name, double price, int quantity)*, long CRC32
+//   inventory-N.log       preallocated, zero filled; records of int length, int CRC32, then byte type, int id and for
+//                         a stored product name, double price, int quantity
+// A name is an int byte count, -1 for none, then UTF-8. A log that fills up is continued in the next generation.
+// snapshot N holds everything up to the end of log N, and maybe some changes after it, which replaying the later
+// logs repeats harmlessly. A new snapshot only replaces older files once it reads back, and the previous snapshot
+// and the logs after it are kept until the next one does, so an unreadable newest snapshot can be rebuilt from the
+// one before. Recovery loads the newest readable snapshot and replays only the later logs, in order, each up to its
+// first torn or corrupt record; opening fails if any of those logs is gone, rather than silently losing what they
+// held. The logs after a damaged one are still replayed: each start writes to a new log, so they hold changes made
+// after that damage was recovered from, and since a record is a product's whole state, it is right whatever was lost
+// before it
+class InventoryLog implements Closeable {
+    private static final Logger logger = LogManager.getLogger();
+    private static final int MAGIC = 0x494e5654; // "INVT"
+    private static final byte VERSION = 1;
+    private static final byte STORED = 1;
+    private static final byte REMOVED = 2;
+    private static final String LOG_SUFFIX = ".log";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final int HEADER_BYTES = 8;
+
+    private final Path directory;
+    private final int logBytes;
+
+    // Appends; also guards the fields below up to syncLock
+    private final Object appendLock = new Object();
+    private long generation;
+    private MappedByteBuffer log;
+    // Offset in log up to which it has been forced
+    private int forced;
+    // Bytes appended over all generations
+    private long written;
+    // written when the last snapshot switched logs
+    private long snapshotWritten;
+    private IOException failure;
+    private boolean closed;
+
+    private final Object syncLock = new Object();
+    private long durable;
+    private boolean syncing;
+    private long syncs;
+
+    // Opens the log in directory and loads what it holds into recovered; the next changes go to a fresh log file
+    InventoryLog(Path directory, int logBytes, Map<Integer, Product> recovered) throws IOException {
+        if (logBytes < 1024) throw new IllegalArgumentException("Log size must be at least 1024 bytes");
+        this.directory = directory;
+        this.logBytes = logBytes;
+        Files.createDirectories(directory);
+        // A replayed tail makes the first snapshot worth taking even if nothing changes
+        if (recover(recovered) > 0) snapshotWritten = -1;
+        openLog(generation + 1);
+    }
+
+    // Records the product's state after a change. Call under the product's lock, so its records stay in the order
+    // of its changes
+    void stored(Product product) {
+        byte[] name = product.getName() == null ? null : product.getName().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(1 + 4 + 4 + (name == null ? 0 : name.length) + 8 + 4);
+        payload.put(STORED).putInt(product.getId());
+        putName(payload, name);
+        payload.putDouble(product.getPrice()).putInt(product.getQuantity());
+        append(payload.array());
+    }
+
+    // Records that the product with this id was removed; call under its lock
+    void removed(int id) {
+        append(ByteBuffer.allocate(1 + 4).put(REMOVED).putInt(id).array());
+    }
+
+    private void append(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        synchronized (appendLock) {
+            try {
+                if (failure != null) throw failure;
+                if (closed) throw new IOException("Inventory log is closed");
+                if (log.remaining() < HEADER_BYTES + payload.length) {
+                    if (HEADER_BYTES + payload.length > logBytes) throw new IOException("Record larger than a log file");
+                    roll();
+                }
+                log.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+                written += HEADER_BYTES + payload.length;
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+                throw new UncheckedIOException("Cannot write to the inventory log", e);
+            }
+        }
+    }
+
+    // Waits until every record appended before the call is on disk. The first waiting thread forces the log, the
+    // ones arriving meanwhile wait for it, then one of them forces everything they appended in a single step
+    void sync() {
+        long target;
+        synchronized (appendLock) {
+            target = written;
+        }
+        boolean interrupted = false;
+        try {
+            while (true) {
+                synchronized (syncLock) {
+                    while (syncing && durable < target) {
+                        try {
+                            syncLock.wait();
+                        } catch (InterruptedException e) {
+                            // Returning early would report an unsynced change as durable
+                            interrupted = true;
+                        }
+                    }
+                    if (durable >= target) return;
+                    syncing = true;
+                }
+                force();
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    // Forces what has been appended so far; only called by the thread that set syncing
+    private void force() {
+        MappedByteBuffer buffer;
+        int from;
+        int to;
+        long reached;
+        synchronized (appendLock) {
+            buffer = log;
+            from = forced;
+            to = log.position();
+            reached = written;
+        }
+        boolean done = false;
+        try {
+            if (to > from) buffer.force(from, to - from);
+            done = true;
+        } finally {
+            synchronized (appendLock) {
+                if (done && buffer == log) forced = Math.max(forced, to);
+            }
+            synchronized (syncLock) {
+                syncing = false;
+                if (done) {
+                    durable = Math.max(durable, reached);
+                    syncs++;
+                }
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    // Syncs that reached the disk so far; with group commit far fewer than the changes logged
+    long syncs() {
+        synchronized (syncLock) {
+            return syncs;
+        }
+    }
+
+    // Writes products to a new snapshot, then deletes the files older than the previous snapshot. Changes may
+    // continue meanwhile: the log is switched to a new generation first, so the snapshot covers at least everything
+    // logged before it, and the products are read afterwards. Snapshots run one at a time; nothing is written if
+    // nothing was logged since the last one
+    synchronized void snapshot(Supplier<Collection<Product>> products) throws IOException {
+        long snapshotGeneration;
+        synchronized (appendLock) {
+            if (closed || written == snapshotWritten) return;
+            snapshotGeneration = generation;
+            roll();
+            snapshotWritten = written;
+        }
+        try {
+            snapshot(snapshotGeneration, products.get());
+        } catch (IOException e) {
+            // So the next attempt writes one even if nothing changes meanwhile
+            synchronized (appendLock) {
+                snapshotWritten = -1;
+            }
+            throw e;
+        }
+    }
+
+    private void snapshot(long snapshotGeneration, Collection<Product> products) throws IOException {
+        Path target = pathOf(snapshotGeneration, SNAPSHOT_SUFFIX);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 64 * 1024), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(products.size());
+            for (Product product : products) {
+                out.writeInt(product.getId());
+                writeName(out, product.getName());
+                out.writeDouble(product.getPrice());
+                out.writeInt(product.getQuantity());
+            }
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        if (!loadSnapshot(target, null)) {
+            Files.deleteIfExists(target);
+            throw new IOException("Inventory snapshot " + target + " does not read back, keeping the files before it");
+        }
+
+        // The previous snapshot and the logs after it stay, to recover from if this one is lost
+        long previous = 0;
+        for (Path file : files()) {
+            long number = generationOf(file);
+            if (file.toString().endsWith(SNAPSHOT_SUFFIX) && number < snapshotGeneration) previous = Math.max(previous, number);
+        }
+        for (Path file : files()) {
+            long number = generationOf(file);
+            if (number < previous || number == previous && file.toString().endsWith(LOG_SUFFIX)) {
+                Files.deleteIfExists(file);
+            }
+        }
+        logger.debug("Wrote inventory snapshot " + target + " (" + products.size() + " products)");
+    }
+
+    // Makes everything logged durable; later changes fail
+    @Override
+    public void close() {
+        sync();
+        synchronized (appendLock) {
+            closed = true;
+        }
+    }
+
+    // Continues in a new log file, after forcing the current one so everything in it is durable. Under appendLock
+    private void roll() throws IOException {
+        long reached = written;
+        if (log != null) log.force();
+        openLog(generation + 1);
+        synchronized (syncLock) {
+            durable = Math.max(durable, reached);
+        }
+    }
+
+    private void openLog(long number) throws IOException {
+        Path file = pathOf(number, LOG_SUFFIX);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // The mapping outlives the channel. The size is made durable now, so syncs only have to force data
+            log = channel.map(FileChannel.MapMode.READ_WRITE, 0, logBytes);
+            channel.force(true);
+        }
+        generation = number;
+        forced = 0;
+    }
+
+    // Returns how many logged changes were replayed
+    private int recover(Map<Integer, Product> products) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        List<Path> logs = new ArrayList<>();
+        for (Path file : files()) {
+            if (file.toString().endsWith(SNAPSHOT_SUFFIX)) snapshots.add(file);
+            else if (file.toString().endsWith(LOG_SUFFIX)) logs.add(file);
+        }
+        snapshots.sort((a, b) -> Long.compare(generationOf(b), generationOf(a)));
+        logs.sort((a, b) -> Long.compare(generationOf(a), generationOf(b)));
+
+        long base = 0;
+        for (Path snapshot : snapshots) {
+            if (loadSnapshot(snapshot, products)) {
+                base = generationOf(snapshot);
+                break;
+            }
+            // Moved aside, so the next snapshot doesn't count it as the previous one to fall back on
+            Path damaged = snapshot.resolveSibling(snapshot.getFileName() + ".damaged");
+            Files.move(snapshot, damaged, StandardCopyOption.REPLACE_EXISTING);
+            logger.warn("Skipping unreadable inventory snapshot " + snapshot + ", moved to " + damaged);
+            products.clear();
+        }
+        generation = base;
+        int replayed = 0;
+        // Every generation has a log, so the ones after base must follow on from it without a gap
+        long expected = base + 1;
+        for (Path file : logs) {
+            long number = generationOf(file);
+            if (number <= base) continue;
+            if (number != expected) {
+                throw new IOException("Cannot recover the inventory in " + directory + ": log " + pathOf(expected, LOG_SUFFIX)
+                        + " is missing" + (snapshots.isEmpty() || generationOf(snapshots.get(0)) == base ? "" : ", and no later snapshot is readable"));
+            }
+            replayed += replay(file, products);
+            generation = number;
+            expected = number + 1;
+        }
+        if (base > 0 || replayed > 0) {
+            logger.info("Recovered " + products.size() + " products from " + directory + " (snapshot " + base + ", "
+                    + replayed + " logged changes)");
+        }
+        return replayed;
+    }
+
+    // With products null the snapshot is only checked
+    private static boolean loadSnapshot(Path snapshot, Map<Integer, Product> products) {
+        try (InputStream file = Files.newInputStream(snapshot)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(file, 64 * 1024), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) return false;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int id = in.readInt();
+                Product product = new Product(id, readName(in), in.readDouble(), in.readInt());
+                if (products != null) products.put(id, product);
+            }
+            long expected = checked.getChecksum().getValue();
+            return in.readLong() == expected;
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Applies the records of one log file; returns how many there were
+    private static int replay(Path file, Map<Integer, Product> products) throws IOException {
+        int replayed = 0;
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            while (mapped.remaining() >= HEADER_BYTES) {
+                int length = mapped.getInt();
+                // The zeros after the last record
+                if (length == 0) break;
+                int crc = mapped.getInt();
+                if (length < 0 || length > mapped.remaining()) throw new IOException("Bad record length " + length);
+                byte[] payload = new byte[length];
+                mapped.get(payload);
+                CRC32 actual = new CRC32();
+                actual.update(payload);
+                if ((int) actual.getValue() != crc) throw new IOException("Checksum mismatch");
+
+                ByteBuffer record = ByteBuffer.wrap(payload);
+                byte type = record.get();
+                int id = record.getInt();
+                if (type == STORED) {
+                    String name = getName(record);
+                    products.put(id, new Product(id, name, record.getDouble(), record.getInt()));
+                } else if (type == REMOVED) {
+                    products.remove(id);
+                } else {
+                    throw new IOException("Unknown record type " + type);
+                }
+                replayed++;
+            }
+        } catch (IOException | RuntimeException e) {
+            // A crash mid-append leaves a torn last record; everything before it is intact
+            logger.warn("Inventory log " + file + " ends in a damaged record after " + replayed + " records : " + e.getMessage());
+        }
+        return replayed;
+    }
+
+    private static void putName(ByteBuffer buffer, byte[] name) {
+        if (name == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(name.length).put(name);
+        }
+    }
+
+    private static String getName(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        byte[] name = new byte[length];
+        buffer.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    private static void writeName(DataOutput out, String name) throws IOException {
+        if (name == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readName(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] name = new byte[length];
+        in.readFully(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    private List<Path> files() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "inventory-*")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private Path pathOf(long number, String suffix) {
+        return directory.resolve(String.format("inventory-%08d%s", number, suffix));
+    }
+
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.indexOf('.');
+        try {
+            return Long.parseLong(name.substring("inventory-".length(), dot < 0 ? name.length() : dot));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+}
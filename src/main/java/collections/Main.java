@@ -5,181 +5,6 @@ import org.apache.logging.log4j.Logger;
 
 import java.util.*;
 
-enum SortBy {
-    ID, NAME, PRICE, QUANTITY;
-}
-
-class Product {
-    public int id;
-    public String name;
-    public double price;
-    public int quantity;
-
-    public Product(int id, String name, double price, int quantity) {
-        if(id<0) throw new IllegalArgumentException("ID cannot be negative");
-        if(price<0) throw new IllegalArgumentException("Price cannot be negative");
-        if(quantity<0) throw new IllegalArgumentException("Quantity cannot be negative");
-
-        this.id = id;
-        this.name = name;
-        this.price = price;
-        this.quantity = quantity;
-    }
-
-    public int getId() {
-        return id;
-    }
-
-    public void setId(int id) {
-        this.id = id;
-    }
-
-    public String getName() {
-        return name;
-    }
-
-    public void setName(String name) {
-        this.name = name;
-    }
-
-    public double getPrice() {
-        return price;
-    }
-
-    public void setPrice(double price) {
-        if(price<0) throw new IllegalArgumentException("Price cannot be negative");
-        this.price = price;
-    }
-
-    public int getQuantity() {
-        return quantity;
-    }
-
-    public void setQuantity(int quantity) {
-        if(quantity<0) throw new IllegalArgumentException("Quantity cannot be negative");
-        this.quantity = quantity;
-    }
-
-    @Override
-    public String toString() {
-        return "Product ID: " + id + ", Name: " + name + ", Price: $" + price + ", Quantity: " + quantity;
-    }
-}
-
-class Inventory {
-    static final Logger logger = LogManager.getLogger();
-    // Using a HashMap to store products by their ID
-    private Map<Integer, Product> inventory = new HashMap<>();
-
-    public void addProduct(Product product) {
-        //product already exists then increment product count by 1;
-        if (inventory.containsKey(product.getId())) {
-            Product existingProduct = inventory.get(product.getId());
-            existingProduct.setQuantity(existingProduct.getQuantity() + 1);
-        } else {
-            inventory.put(product.getId(), product);
-        }
-    }
-
-    public void removeProduct(Product product) {
-
-        if (inventory.containsKey(product.getId())) {
-            Product existingProduct = inventory.get(product.getId());
-            if (existingProduct.getQuantity() > 1) existingProduct.setQuantity(existingProduct.getQuantity() - 1);
-            else {
-                inventory.remove(product.getId());
-            }
-        } else {
-            logger.warn("Product not found");
-        }
-    }
-
-    public void deleteProduct(Product product) {
-        if (inventory.containsKey(product.getId())) {
-            inventory.remove(product.getId());
-        } else {
-            logger.warn("Product not found");
-        }
-    }
-
-    public void updateProduct(Product product, String newName, double newPrice, int newQuantity) {
-        if (inventory.containsKey(product.getId())) {
-            Product existingProduct = inventory.get(product.getId());
-            existingProduct.setName(newName);
-            existingProduct.setPrice(newPrice);
-            existingProduct.setQuantity(newQuantity);
-        } else {
-            logger.warn("Product not found");
-        }
-    }
-
-    public void displayAllProducts() {
-        List<Product> productList = new ArrayList<>(inventory.values());
-        productList.sort(Comparator.comparing(Product::getId));
-        for (Product product : productList) {
-            logger.debug(product);
-        }
-    }
-
-    public void displayAllProducts(SortBy sortedBy) {
-        List<Product> productList = new ArrayList<>(inventory.values());
-        switch (sortedBy) {
-            case NAME:
-                productList.sort(Comparator.comparing(Product::getName));
-                break;
-            case PRICE:
-                productList.sort(Comparator.comparing(Product::getPrice));
-                break;
-            case QUANTITY:
-                productList.sort(Comparator.comparing(Product::getQuantity));
-                break;
-            default:
-                productList.sort(Comparator.comparing(Product::getId));
-                break;
-        }
-        for (Product product : productList) {
-            logger.debug(product);
-        }
-    }
-
-    public void findProductByName(String name) {
-        for (Product product : inventory.values()) {
-            if (product.getName().equalsIgnoreCase(name)) {
-                logger.debug(product);
-            }
-        }
-    }
-
-    // Check if product exists by ID
-    public boolean checkProductExists(int id) {
-        return inventory.containsKey(id);
-    }
-
-    public void listAllProductNames() {
-        Set<String> productNames = new TreeSet<>();
-
-        for (Product product : inventory.values()) {
-            productNames.add(product.getName());
-        }
-
-        for (String name : productNames) {
-            logger.debug(name);
-        }
-    }
-
-    // Restock a product (add quantity)
-    public void restockProduct(Product product, int additionalQuantity) {
-        if (inventory.containsKey(product.getId())) {
-            Product existingProduct = inventory.get(product.getId());
-            existingProduct.setQuantity(existingProduct.getQuantity() + additionalQuantity);
-        } else {
-            logger.warn("Product Not Found");
-        }
-    }
-
-}
-
-
 public class Main {
     static final Logger logger = LogManager.getLogger();
 
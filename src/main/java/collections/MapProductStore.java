@@ -0,0 +1,43 @@
+package collections;
+
+import java.util.Iterator;
+import java.util.Map;
+
+// ProductStore over any Map, how Inventory kept its products originally. Every call boxes the id into an Integer
+class MapProductStore implements ProductStore {
+    private final Map<Integer, Product> products;
+
+    MapProductStore(Map<Integer, Product> products) {
+        this.products = products;
+    }
+
+    @Override
+    public Product get(int id) {
+        return products.get(id);
+    }
+
+    @Override
+    public boolean containsKey(int id) {
+        return products.containsKey(id);
+    }
+
+    @Override
+    public Product put(Product product) {
+        return products.put(product.getId(), product);
+    }
+
+    @Override
+    public Product remove(int id) {
+        return products.remove(id);
+    }
+
+    @Override
+    public int size() {
+        return products.size();
+    }
+
+    @Override
+    public Iterator<Product> iterator() {
+        return products.values().iterator();
+    }
+}
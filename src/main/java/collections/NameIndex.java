@@ -0,0 +1,108 @@
+package collections;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Secondary index on product names, kept up to date by Inventory. Names are case folded the way equalsIgnoreCase
+// compares them, and products are kept in a skip list ordered by folded name then id, so an exact lookup is
+// O(log n) and a prefix query is O(log n + k) over the matching range. The distinct names as given are counted in a
+// second, naturally ordered map, which is what listAllProductNames prints. Neither takes a lock, so
+// ConcurrentInventory's changes to different products never wait on the index. Products without a name aren't indexed
+class NameIndex {
+    private static final Comparator<Entry> ORDER =
+            Comparator.comparing((Entry entry) -> entry.folded).thenComparingInt(entry -> entry.id);
+
+    private final ConcurrentSkipListSet<Entry> byFoldedName = new ConcurrentSkipListSet<>(ORDER);
+    // Exact name to the number of products carrying it
+    private final ConcurrentSkipListMap<String, Integer> names = new ConcurrentSkipListMap<>();
+
+    private static final class Entry {
+        private final String folded;
+        private final int id;
+        private final Product product;
+
+        private Entry(String folded, int id, Product product) {
+            this.folded = folded;
+            this.id = id;
+            this.product = product;
+        }
+    }
+
+    void add(Product product) {
+        String name = product.getName();
+        if (name == null) return;
+        if (byFoldedName.add(new Entry(fold(name), product.getId(), product))) names.merge(name, 1, Integer::sum);
+    }
+
+    // By id, since the index may hold an older value of the product than the one removed
+    void remove(Product product) {
+        String name = product.getName();
+        if (name == null) return;
+        if (byFoldedName.remove(new Entry(fold(name), product.getId(), null))) {
+            names.computeIfPresent(name, (key, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    // Products whose name equals name, ignoring case
+    List<Product> named(String name) {
+        List<Product> products = new ArrayList<>();
+        if (name == null) return products;
+        String folded = fold(name);
+        // Ids are never negative, so -1 sorts before every product with the name and MAX_VALUE after
+        for (Entry entry : byFoldedName.subSet(new Entry(folded, -1, null), true, new Entry(folded, Integer.MAX_VALUE, null), true)) {
+            products.add(entry.product);
+        }
+        return products;
+    }
+
+    // Products whose name starts with prefix, ignoring case, ordered by name
+    List<Product> withPrefix(String prefix) {
+        List<Product> products = new ArrayList<>();
+        for (Entry entry : range(prefix)) {
+            products.add(entry.product);
+        }
+        return products;
+    }
+
+    // Up to limit names starting with prefix, ordered by name. Names differing only in case are one suggestion,
+    // spelled like one of the products carrying it
+    List<String> complete(String prefix, int limit) {
+        if (limit < 0) throw new IllegalArgumentException("Limit cannot be negative");
+        List<String> completions = new ArrayList<>(Math.min(limit, 16));
+        String previous = null;
+        for (Entry entry : range(prefix)) {
+            if (entry.folded.equals(previous)) continue;
+            if (completions.size() == limit) break;
+            completions.add(entry.product.getName());
+            previous = entry.folded;
+        }
+        return completions;
+    }
+
+    // Distinct names in natural order
+    List<String> names() {
+        return new ArrayList<>(names.keySet());
+    }
+
+    private NavigableSet<Entry> range(String prefix) {
+        String folded = fold(prefix == null ? "" : prefix);
+        // Every folded name starting with the prefix sorts below prefix + the largest char
+        return byFoldedName.subSet(new Entry(folded, -1, null), true, new Entry(folded + Character.MAX_VALUE, -1, null), false);
+    }
+
+    // Same per-char mapping as equalsIgnoreCase and String.CASE_INSENSITIVE_ORDER
+    static String fold(String name) {
+        StringBuilder folded = null;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            char f = Character.toLowerCase(Character.toUpperCase(c));
+            if (f != c && folded == null) folded = new StringBuilder(name.length()).append(name, 0, i);
+            if (folded != null) folded.append(f);
+        }
+        return folded == null ? name : folded.toString();
+    }
+}
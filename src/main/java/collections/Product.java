@@ -0,0 +1,58 @@
+package collections;
+
+class Product {
+    public int id;
+    public String name;
+    public double price;
+    public int quantity;
+
+    public Product(int id, String name, double price, int quantity) {
+        if(id<0) throw new IllegalArgumentException("ID cannot be negative");
+        if(price<0) throw new IllegalArgumentException("Price cannot be negative");
+        if(quantity<0) throw new IllegalArgumentException("Quantity cannot be negative");
+
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        this.quantity = quantity;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public void setPrice(double price) {
+        if(price<0) throw new IllegalArgumentException("Price cannot be negative");
+        this.price = price;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        if(quantity<0) throw new IllegalArgumentException("Quantity cannot be negative");
+        this.quantity = quantity;
+    }
+
+    @Override
+    public String toString() {
+        return "Product ID: " + id + ", Name: " + name + ", Price: $" + price + ", Quantity: " + quantity;
+    }
+}
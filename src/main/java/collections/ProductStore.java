@@ -0,0 +1,16 @@
+package collections;
+
+// Where an Inventory keeps its products, keyed by product id. Ids are never negative, Product rejects them
+interface ProductStore extends Iterable<Product> {
+    Product get(int id);
+
+    boolean containsKey(int id);
+
+    // Stores the product under its id; returns the product it replaced, or null
+    Product put(Product product);
+
+    // Returns the removed product, or null if there was none
+    Product remove(int id);
+
+    int size();
+}
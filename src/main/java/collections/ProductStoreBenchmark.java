@@ -0,0 +1,93 @@
+package collections;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Compares Inventory storage types on a large catalog: heap taken by the store itself (the products are created
+// beforehand and shared, so only map overhead is counted), inserts, lookups and restocks per second, and bytes
+// allocated per lookup. Run with a heap big enough for the catalog, e.g. -Xmx2g for the default.
+//
+// Usage: ProductStoreBenchmark [products=3000000] [operations=20000000]
+public class ProductStoreBenchmark {
+    private static final Logger logger = LogManager.getLogger();
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int productCount = args.length > 0 ? Integer.parseInt(args[0]) : 3_000_000;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 20_000_000;
+
+        // Sparse ids like real SKUs, all past the Integer cache
+        Product[] products = new Product[productCount];
+        for (int i = 0; i < productCount; i++) {
+            products[i] = new Product(1_000 + i * 7, "Product", 10.0, 100);
+        }
+
+        logger.info(String.format("%,d products, %,d operations", productCount, operations));
+        logger.info(String.format("%-9s %13s %14s %14s %14s %16s", "storage", "bytes/entry", "inserts/sec", "lookups/sec",
+                "restocks/sec", "bytes/lookup"));
+        for (int round = 0; round < ROUNDS; round++) {
+            for (StorageType storage : StorageType.values()) {
+                run(storage, products, operations, round == ROUNDS - 1);
+            }
+        }
+    }
+
+    // The earlier rounds only warm up the JIT
+    private static void run(StorageType storage, Product[] products, int operations, boolean report) {
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        Inventory inventory = new Inventory(storage);
+        for (Product product : products) {
+            inventory.addProduct(product);
+        }
+        long insertNanos = System.nanoTime() - start;
+        long heapAfter = usedHeap();
+
+        // Random picks, so neither store gets to walk its table in order
+        Product[] picks = new Product[1 << 16];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < picks.length; i++) {
+            picks[i] = products[random.nextInt(products.length)];
+        }
+
+        long allocatedBefore = allocatedBytes();
+        start = System.nanoTime();
+        long found = 0;
+        for (int i = 0; i < operations; i++) {
+            if (inventory.checkProductExists(picks[i & (picks.length - 1)].getId())) found++;
+        }
+        long lookupNanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            inventory.restockProduct(picks[i & (picks.length - 1)], 1);
+        }
+        long restockNanos = System.nanoTime() - start;
+
+        if (found != operations) throw new IllegalStateException(storage + " lost products");
+        if (!report) return;
+        logger.info(String.format("%-9s %13.1f %,14.0f %,14.0f %,14.0f %16.2f", storage,
+                (heapAfter - heapBefore) / (double) products.length,
+                products.length * 1e9 / insertNanos,
+                operations * 1e9 / lookupNanos,
+                operations * 1e9 / restockNanos,
+                allocated / (double) operations));
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().threadId());
+    }
+}
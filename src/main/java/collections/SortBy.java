@@ -0,0 +1,5 @@
+package collections;
+
+enum SortBy {
+    ID, NAME, PRICE, QUANTITY;
+}
@@ -0,0 +1,164 @@
+package collections;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Products ordered by one SortBy key, ties broken by id, kept up to date by Inventory. Each entry carries the key
+// values the product had when it was indexed, so Inventory removes a product before changing a sorted field and
+// adds it back afterwards. Ranges, the top k and pages are read off a skip list in O(log n + k). It takes no lock,
+// so ConcurrentInventory's changes to different products never wait on the index; a query running alongside them
+// is weakly consistent and may miss a product being moved, or meet it at both places. A page ends with a cursor
+// holding the last key and id returned, so the next page starts right after it even if products were added or
+// removed in between
+class SortedIndex {
+    private static final int INITIAL_RESULT_CAPACITY = 64;
+
+    private final SortBy sortBy;
+    private final ConcurrentSkipListSet<Entry> entries;
+    // Set by Inventory once every product already stored has been added
+    volatile boolean filled;
+
+    SortedIndex(SortBy sortBy) {
+        this.sortBy = sortBy;
+        this.entries = new ConcurrentSkipListSet<>(comparatorFor(sortBy));
+    }
+
+    private static final class Entry {
+        private final double number;
+        private final String text;
+        private final int id;
+        private final Product product;
+
+        private Entry(double number, String text, int id, Product product) {
+            this.number = number;
+            this.text = text;
+            this.id = id;
+            this.product = product;
+        }
+    }
+
+    // Where a page left off; only valid for the index that returned it
+    static final class Cursor {
+        private final SortBy sortBy;
+        private final Entry last;
+
+        private Cursor(SortBy sortBy, Entry last) {
+            this.sortBy = sortBy;
+            this.last = last;
+        }
+    }
+
+    static final class Page {
+        private final List<Product> products;
+        private final Cursor next;
+
+        Page(List<Product> products, Cursor next) {
+            this.products = products;
+            this.next = next;
+        }
+
+        public List<Product> getProducts() {
+            return products;
+        }
+
+        // Cursor for the following page, null on the last one
+        public Cursor getNext() {
+            return next;
+        }
+    }
+
+    void add(Product product) {
+        entries.add(entryOf(product));
+    }
+
+    void remove(Product product) {
+        entries.remove(entryOf(product));
+    }
+
+    List<Product> all() {
+        return productsOf(entries, Integer.MAX_VALUE);
+    }
+
+    // Products whose numeric key is between from and to, both included
+    List<Product> range(double from, double to) {
+        if (sortBy == SortBy.NAME) throw new IllegalArgumentException("Names have no numeric range");
+        if (from > to) return new ArrayList<>();
+        return productsOf(entries.subSet(probe(from, -1), true, probe(to, Integer.MAX_VALUE), true), Integer.MAX_VALUE);
+    }
+
+    // Products whose numeric key is below to
+    List<Product> below(double to) {
+        if (sortBy == SortBy.NAME) throw new IllegalArgumentException("Names have no numeric range");
+        return productsOf(entries.headSet(probe(to, -1), false), Integer.MAX_VALUE);
+    }
+
+    // The k products with the highest keys, highest first
+    List<Product> top(int k) {
+        if (k < 0) throw new IllegalArgumentException("K cannot be negative");
+        return productsOf(entries.descendingSet(), k);
+    }
+
+    // Up to size products in ascending order, starting after the cursor, or at the lowest key for a null cursor
+    Page page(Cursor after, int size) {
+        if (size <= 0) throw new IllegalArgumentException("Page size must be positive");
+        if (after != null && after.sortBy != sortBy) throw new IllegalArgumentException("Cursor is for products sorted by " + after.sortBy);
+        NavigableSet<Entry> rest = after == null ? entries : entries.tailSet(after.last, false);
+
+        // A skip list counts its entries by walking them, so result lists aren't presized from size()
+        List<Product> products = new ArrayList<>(Math.min(size, INITIAL_RESULT_CAPACITY));
+        Entry last = null;
+        Iterator<Entry> iterator = rest.iterator();
+        while (iterator.hasNext() && products.size() < size) {
+            last = iterator.next();
+            products.add(last.product);
+        }
+        return new Page(products, iterator.hasNext() ? new Cursor(sortBy, last) : null);
+    }
+
+    private static List<Product> productsOf(NavigableSet<Entry> entries, int limit) {
+        List<Product> products = new ArrayList<>(Math.min(limit, INITIAL_RESULT_CAPACITY));
+        for (Entry entry : entries) {
+            if (products.size() == limit) break;
+            products.add(entry.product);
+        }
+        return products;
+    }
+
+    private Entry entryOf(Product product) {
+        switch (sortBy) {
+            case NAME:
+                return new Entry(0, product.getName(), product.getId(), product);
+            case PRICE:
+                return new Entry(product.getPrice(), null, product.getId(), product);
+            case QUANTITY:
+                return new Entry(product.getQuantity(), null, product.getId(), product);
+            default:
+                return new Entry(product.getId(), null, product.getId(), product);
+        }
+    }
+
+    // Ids are never negative, so -1 sorts before every product with the key and MAX_VALUE after
+    private static Entry probe(double number, int id) {
+        return new Entry(number, null, id, null);
+    }
+
+    // Written out rather than composed from Comparator.comparing, since every skip list step calls it
+    private static Comparator<Entry> comparatorFor(SortBy sortBy) {
+        switch (sortBy) {
+            case NAME:
+                return (a, b) -> {
+                    int byName = a.text == null ? (b.text == null ? 0 : -1) : (b.text == null ? 1 : a.text.compareTo(b.text));
+                    return byName != 0 ? byName : Integer.compare(a.id, b.id);
+                };
+            default:
+                return (a, b) -> {
+                    int byNumber = Double.compare(a.number, b.number);
+                    return byNumber != 0 ? byNumber : Integer.compare(a.id, b.id);
+                };
+        }
+    }
+}
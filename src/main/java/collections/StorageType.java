@@ -0,0 +1,20 @@
+package collections;
+
+import java.util.HashMap;
+
+// How a single-threaded Inventory stores its products
+enum StorageType {
+    // HashMap<Integer, Product>, the original behaviour
+    HASH_MAP,
+    // Open addressing on primitive int ids: no boxing on lookups and no node per product
+    INT_MAP;
+
+    ProductStore create() {
+        switch (this) {
+            case INT_MAP:
+                return new IntProductMap();
+            default:
+                return new MapProductStore(new HashMap<>());
+        }
+    }
+}
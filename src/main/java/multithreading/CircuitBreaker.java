@@ -0,0 +1,74 @@
+package multithreading;
+
+import java.io.IOException;
+
+// Per-host breaker: after failureThreshold consecutive host failures it opens and rejects requests for openMillis,
+// then lets a single trial request through (half-open) whose outcome closes or re-opens it
+class CircuitBreaker {
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    static class OpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        OpenException(String host) {
+            super("Circuit open for host " + host);
+        }
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+    private boolean trialInFlight;
+
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold <= 0) throw new IllegalArgumentException("Failure threshold must be positive");
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    synchronized boolean allowRequest() {
+        switch (state) {
+            case OPEN:
+                if (System.currentTimeMillis() < openUntil) return false;
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            case HALF_OPEN:
+                if (trialInFlight) return false;
+                trialInFlight = true;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    synchronized void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    synchronized void recordFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openUntil = System.currentTimeMillis() + openMillis;
+        }
+    }
+
+    // Outcome that says nothing about the host (e.g. a 404) still ends a half-open trial
+    synchronized void recordNeutral() {
+        trialInFlight = false;
+    }
+
+    synchronized long remainingOpenMillis() {
+        return state == State.OPEN ? Math.max(0, openUntil - System.currentTimeMillis()) : 0;
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,436 @@
+package multithreading;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Durable crawl state so an interrupted crawl can resume: the pages admitted to the frontier but not completed yet
+// (with their depth), and a Bloom filter of the pages whose results have reached the sink, so memory stays bounded
+// like the frontier's own. Changes are buffered in memory and, every interval, the result sink is flushed and the
+// buffered changes are appended to a log and forced to disk, so a page is only recorded as completed once its result
+// is on disk, and a crash loses at most one interval. Once the log holds snapshotEvery records, the whole state is
+// written to a snapshot and a new log is started.
+//
+// Files, numbered by generation N, strings as int length and UTF-8 bytes:
+//   crawl-N.snapshot  int MAGIC, byte VERSION, int pending, (int depth, string url)*, long completed,
+//                     completed Bloom filter (see BloomFilter.writeTo), long CRC32
+//   crawl-N.log       records of int length, int CRC32, then byte type, int depth, string url
+// snapshot N holds everything up to the end of log N. Recovery loads the newest readable snapshot, replays the later
+// logs up to the first torn or corrupt record, then starts a fresh log
+class CrawlCheckpoint implements Closeable {
+    private static final Logger logger = LogManager.getLogger();
+    private static final int MAGIC = 0x434b5054; // "CKPT"
+    private static final byte VERSION = 2;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final byte ADMITTED = 1;
+    private static final byte COMPLETED = 2;
+    private static final String LOG_SUFFIX = ".log";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private final Path directory;
+    private final long intervalMillis;
+    private final int snapshotEvery;
+
+    // Durable state, only changed under the checkpoint lock (this); pending keeps admission order. The filter is
+    // shared with the frontier of a resumed crawl, which only reads it
+    private final Map<String, Integer> pending = new LinkedHashMap<>();
+    private BloomFilter completed;
+    private long completedCount;
+    private final Map<String, Integer> resumedPending;
+    private final long resumedCompletedCount;
+
+    private final Object bufferLock = new Object();
+    private List<Change> buffer = new ArrayList<>();
+
+    private long generation;
+    private DataOutputStream log;
+    // The file under log, to force it
+    private FileOutputStream logFile;
+    private int logRecords;
+    private ResultSink sink;
+    private ScheduledExecutorService timer;
+    private boolean closed;
+
+    // With resume false any earlier checkpoint in the directory is discarded. expectedPages sizes the completed filter
+    // of a fresh checkpoint; a resumed one keeps the filter it was saved with
+    CrawlCheckpoint(Path directory, boolean resume, long expectedPages, long intervalMillis, int snapshotEvery) throws IOException {
+        if (intervalMillis <= 0 || snapshotEvery <= 0) throw new IllegalArgumentException("Invalid checkpoint interval");
+        this.directory = directory;
+        this.intervalMillis = intervalMillis;
+        this.snapshotEvery = snapshotEvery;
+        this.completed = new BloomFilter(expectedPages, FALSE_POSITIVE_RATE);
+        Files.createDirectories(directory);
+
+        if (resume) {
+            recover();
+        } else {
+            for (Path file : files()) {
+                Files.delete(file);
+            }
+        }
+        this.resumedPending = Collections.unmodifiableMap(new LinkedHashMap<>(pending));
+        this.resumedCompletedCount = completedCount;
+        if (resume) {
+            logger.info("Resuming crawl from " + directory + ": " + completedCount + " pages completed, " + pending.size() + " pending");
+        }
+        openLog(generation + 1);
+    }
+
+    CrawlCheckpoint(Path directory, boolean resume, long expectedPages) throws IOException {
+        this(directory, resume, expectedPages, 5_000, 100_000);
+    }
+
+    // Admitted but not completed when the checkpoint was loaded, in admission order, with their depths
+    Map<String, Integer> resumedPending() {
+        return resumedPending;
+    }
+
+    // Pages completed so far; a false positive only makes a resumed crawl skip a page it never fetched, the way the
+    // frontier's own filter does
+    BloomFilter completed() {
+        return completed;
+    }
+
+    long resumedCompletedCount() {
+        return resumedCompletedCount;
+    }
+
+    // Starts periodic checkpoints; each one flushes the sink first
+    synchronized void start(ResultSink sink) {
+        if (closed) throw new IllegalStateException("Checkpoint is closed");
+        this.sink = sink;
+        if (timer != null) return;
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "crawl-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                logger.error("Checkpoint failed : " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void admitted(CrawlRequest request) {
+        record(new Change(ADMITTED, request.getUrl(), request.getDepth()));
+    }
+
+    // Call after the page's result has been handed to the sink
+    void completed(String url) {
+        record(new Change(COMPLETED, url, 0));
+    }
+
+    private void record(Change change) {
+        synchronized (bufferLock) {
+            buffer.add(change);
+        }
+    }
+
+    // Makes everything recorded so far durable
+    synchronized void checkpoint() throws IOException, InterruptedException {
+        if (closed) return;
+        List<Change> changes;
+        synchronized (bufferLock) {
+            if (buffer.isEmpty()) return;
+            changes = buffer;
+            buffer = new ArrayList<>();
+        }
+        // Completions are only logged once their results are stored. On any failure the changes are kept for the
+        // next attempt; logging them twice is harmless since replaying a change is idempotent
+        try {
+            if (sink != null) sink.flush();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            requeue(changes);
+            throw e;
+        }
+        try {
+            appendToLog(changes);
+        } catch (IOException | RuntimeException e) {
+            requeue(changes);
+            rollLog(e);
+            throw e;
+        }
+        for (Change change : changes) {
+            apply(change);
+        }
+        logRecords += changes.size();
+
+        if (logRecords >= snapshotEvery) snapshot();
+    }
+
+    private void requeue(List<Change> changes) {
+        synchronized (bufferLock) {
+            changes.addAll(buffer);
+            buffer = changes;
+        }
+    }
+
+    private void appendToLog(List<Change> changes) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(payload);
+        for (Change change : changes) {
+            payload.reset();
+            out.writeByte(change.type);
+            out.writeInt(change.depth);
+            writeString(out, change.url);
+            CRC32 crc = new CRC32();
+            crc.update(payload.toByteArray());
+            log.writeInt(payload.size());
+            log.writeInt((int) crc.getValue());
+            payload.writeTo(log);
+        }
+        log.flush();
+        logFile.getFD().sync();
+    }
+
+    // A failed append may leave a torn record, and replay stops at the first one, so later records go to a new log
+    private void rollLog(Exception failure) {
+        try {
+            log.close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+        try {
+            openLog(generation + 1);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    // Final checkpoint; stops the periodic ones
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        if (timer != null) timer.shutdownNow();
+        // A cancelled crawl may end with its thread interrupted, which must not cost it the final checkpoint
+        boolean interrupted = Thread.interrupted();
+        try {
+            checkpoint();
+        } catch (InterruptedException e) {
+            interrupted = true;
+            logger.warn("Interrupted during the final checkpoint, the last changes are not recorded");
+        } finally {
+            closed = true;
+            log.close();
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    private void apply(Change change) {
+        if (change.type == ADMITTED) {
+            if (!completed.mightContain(change.url)) pending.putIfAbsent(change.url, change.depth);
+        } else {
+            pending.remove(change.url);
+            if (completed.put(change.url)) completedCount++;
+        }
+    }
+
+    private void snapshot() throws IOException {
+        Path target = pathOf(generation, SNAPSHOT_SUFFIX);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 64 * 1024), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(pending.size());
+            for (Map.Entry<String, Integer> entry : pending.entrySet()) {
+                out.writeInt(entry.getValue());
+                writeString(out, entry.getKey());
+            }
+            out.writeLong(completedCount);
+            completed.writeTo(out);
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        long snapshotGeneration = generation;
+        log.close();
+        openLog(generation + 1);
+        // Everything older is covered by the new snapshot
+        for (Path file : files()) {
+            long number = generationOf(file);
+            if (number < snapshotGeneration || number == snapshotGeneration && file.toString().endsWith(LOG_SUFFIX)) {
+                Files.deleteIfExists(file);
+            }
+        }
+        logger.debug("Wrote checkpoint snapshot " + target + " (" + pending.size() + " pending, " + completedCount + " completed)");
+    }
+
+    private void openLog(long number) throws IOException {
+        generation = number;
+        logFile = new FileOutputStream(pathOf(number, LOG_SUFFIX).toFile(), true);
+        log = new DataOutputStream(new BufferedOutputStream(logFile, 64 * 1024));
+        logRecords = 0;
+    }
+
+    private void recover() throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        List<Path> logs = new ArrayList<>();
+        for (Path file : files()) {
+            if (file.toString().endsWith(SNAPSHOT_SUFFIX)) snapshots.add(file);
+            else if (file.toString().endsWith(LOG_SUFFIX)) logs.add(file);
+            // A snapshot that was being written when the crawl died
+            else if (file.toString().endsWith(".tmp")) Files.deleteIfExists(file);
+        }
+        snapshots.sort((a, b) -> Long.compare(generationOf(b), generationOf(a)));
+        logs.sort((a, b) -> Long.compare(generationOf(a), generationOf(b)));
+
+        long base = 0;
+        for (Path snapshot : snapshots) {
+            if (loadSnapshot(snapshot)) {
+                base = generationOf(snapshot);
+                break;
+            }
+            logger.warn("Skipping unreadable checkpoint snapshot " + snapshot);
+            pending.clear();
+        }
+        generation = base;
+        for (Path file : logs) {
+            long number = generationOf(file);
+            if (number <= base) continue;
+            replay(file);
+            generation = Math.max(generation, number);
+        }
+    }
+
+    // Leaves the state untouched unless the snapshot is valid
+    private boolean loadSnapshot(Path snapshot) {
+        try (InputStream file = Files.newInputStream(snapshot)) {
+            long size = Files.size(snapshot);
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(file, 64 * 1024), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) return false;
+            int pendingCount = in.readInt();
+            for (int i = 0; i < pendingCount; i++) {
+                int depth = in.readInt();
+                pending.put(readString(in, size), depth);
+            }
+            long count = in.readLong();
+            BloomFilter filter = BloomFilter.readFrom(in, size);
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) return false;
+            completed = filter;
+            completedCount = count;
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void replay(Path file) throws IOException {
+        int replayed = 0;
+        long size = Files.size(file);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                int crc = in.readInt();
+                if (length <= 0 || length > size) throw new IOException("Bad record length " + length);
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                CRC32 actual = new CRC32();
+                actual.update(payload);
+                if ((int) actual.getValue() != crc) throw new IOException("Checksum mismatch");
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = record.readByte();
+                int depth = record.readInt();
+                apply(new Change(type, readString(record, length), depth));
+                replayed++;
+            }
+        } catch (IOException e) {
+            // A crash mid-append leaves a torn last record; everything before it is intact
+            logger.warn("Checkpoint log " + file + " ends in a damaged record after " + replayed + " records : " + e.getMessage());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // maxBytes bounds what a corrupt length can make it allocate
+    private static String readString(DataInputStream in, long maxBytes) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > maxBytes) throw new IOException("Bad string length " + length);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private List<Path> files() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "crawl-*")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private Path pathOf(long number, String suffix) {
+        return directory.resolve(String.format("crawl-%08d%s", number, suffix));
+    }
+
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.indexOf('.');
+        try {
+            return Long.parseLong(name.substring("crawl-".length(), dot < 0 ? name.length() : dot));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private static final class Change {
+        private final byte type;
+        private final String url;
+        private final int depth;
+
+        private Change(byte type, String url, int depth) {
+            this.type = type;
+            this.url = url;
+            this.depth = depth;
+        }
+    }
+}
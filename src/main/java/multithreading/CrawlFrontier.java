@@ -0,0 +1,117 @@
+package multithreading;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Decides which discovered links get crawled: resolves them, enforces depth and page limits and drops repeats
+class CrawlFrontier {
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final int maxDepth;
+    private final int maxPages;
+    private final AtomicInteger admitted = new AtomicInteger();
+
+    // The exact set is authoritative until it holds exactCapacity URLs, after that the Bloom filter alone decides,
+    // so heap stays bounded at the cost of occasionally skipping a URL that was never seen
+    private final BloomFilter bloomFilter;
+    private final Set<String> exactVisited = ConcurrentHashMap.newKeySet();
+    private final int exactCapacity;
+    private volatile boolean exactFull;
+    // Pages completed by an earlier run of a resumed crawl
+    private volatile BloomFilter completedEarlier;
+
+    CrawlFrontier(int maxDepth, int maxPages, int exactCapacity) {
+        if (maxDepth < 0) throw new IllegalArgumentException("Max depth cannot be negative");
+        if (maxPages <= 0) throw new IllegalArgumentException("Max pages must be positive");
+
+        this.maxDepth = maxDepth;
+        this.maxPages = maxPages;
+        this.exactCapacity = exactCapacity;
+        this.bloomFilter = new BloomFilter(maxPages, FALSE_POSITIVE_RATE);
+    }
+
+    CrawlFrontier(int maxDepth, int maxPages) {
+        this(maxDepth, maxPages, Math.min(maxPages, 100_000));
+    }
+
+    CrawlRequest offerSeed(String url) {
+        return offer(normalize(null, url), 0);
+    }
+
+    CrawlRequest offerLink(CrawlRequest parent, String href) {
+        return offer(resolveLink(parent, href), parent.getDepth() + 1);
+    }
+
+    // The URL a link on parent leads to, or null if it is past maxDepth or not crawlable
+    String resolveLink(CrawlRequest parent, String href) {
+        if (parent.getDepth() >= maxDepth) return null;
+        return normalize(parent.getUrl(), href);
+    }
+
+    // Re-admits a URL recorded by an earlier run of the crawl, bypassing the limits; it counts towards maxPages
+    CrawlRequest restore(String url, int depth) {
+        markVisited(url);
+        admitted.incrementAndGet();
+        return new CrawlRequest(url, depth);
+    }
+
+    // Marks the pages an earlier run completed as visited; they count towards maxPages
+    void restoreCompleted(BloomFilter completed, long count) {
+        completedEarlier = completed;
+        admitted.addAndGet((int) Math.min(count, maxPages));
+    }
+
+    int admittedCount() {
+        return admitted.get();
+    }
+
+    // Admits an already normalized URL
+    CrawlRequest offer(String url, int depth) {
+        if (url == null || admitted.get() >= maxPages) return null;
+        if (!markVisited(url)) return null;
+
+        int previous = admitted.getAndUpdate(n -> n < maxPages ? n + 1 : n);
+        if (previous >= maxPages) return null;
+        return new CrawlRequest(url, depth);
+    }
+
+    private boolean markVisited(String url) {
+        BloomFilter earlier = completedEarlier;
+        if (earlier != null && earlier.mightContain(url)) return false;
+        if (exactVisited.contains(url)) return false;
+        if (exactFull) return bloomFilter.put(url);
+
+        if (!exactVisited.add(url)) return false;
+        bloomFilter.put(url);
+        if (exactVisited.size() >= exactCapacity) exactFull = true;
+        return true;
+    }
+
+    // Resolves href against base and strips the fragment; returns null for anything that isn't http(s)
+    static String normalize(String base, String href) {
+        if (href == null || href.isBlank()) return null;
+        try {
+            URI uri = new URI(href.trim());
+            if (base != null) uri = new URI(base).resolve(uri);
+
+            String scheme = uri.getScheme();
+            if (scheme == null || uri.getHost() == null) return null;
+            scheme = scheme.toLowerCase(Locale.ROOT);
+            if (!scheme.equals("http") && !scheme.equals("https")) return null;
+
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            StringBuilder normalized = new StringBuilder()
+                    .append(scheme).append("://").append(uri.getHost().toLowerCase(Locale.ROOT));
+            if (uri.getPort() != -1) normalized.append(':').append(uri.getPort());
+            normalized.append(path);
+            if (uri.getRawQuery() != null) normalized.append('?').append(uri.getRawQuery());
+            return normalized.toString();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package multithreading;
+
+// How a crawl ended; pages already handed to the sink stay there whatever the outcome
+public class CrawlResult {
+    private final int scraped;
+    private final int failed;
+    private final int abandoned;
+    private final CrawlScope.Outcome outcome;
+    private final long elapsedMillis;
+
+    CrawlResult(int scraped, int failed, int abandoned, CrawlScope.Outcome outcome, long elapsedMillis) {
+        this.scraped = scraped;
+        this.failed = failed;
+        this.abandoned = abandoned;
+        this.outcome = outcome;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getScraped() {
+        return scraped;
+    }
+
+    // Pages that gave up after their retries
+    public int getFailed() {
+        return failed;
+    }
+
+    // Pages queued or in flight when the crawl ended early
+    public int getAbandoned() {
+        return abandoned;
+    }
+
+    public CrawlScope.Outcome getOutcome() {
+        return outcome;
+    }
+
+    public boolean isComplete() {
+        return outcome == CrawlScope.Outcome.COMPLETED;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return outcome + ": " + scraped + " scraped, " + failed + " failed, " + abandoned + " abandoned in " + elapsedMillis + " ms";
+    }
+}
@@ -0,0 +1,194 @@
+package multithreading;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Structured lifetime for the tasks of one crawl: tasks are forked into the scope and the owner joins it. join
+// returns once every task has finished, or ends the scope early when the deadline passes, when more than
+// failureBudget tasks have failed, or on cancel. Ending early cancels the fetches in flight, interrupts attempts
+// running on workers and turns tasks still queued (rate limited or waiting out a backoff) into no-ops, so join
+// returns the partial results as soon as the running attempts have stopped.
+//
+// A task is pending from fork until finished; each attempt at it runs between a successful enter and exit
+class CrawlScope {
+    private static final Logger logger = LogManager.getLogger();
+    // How long join waits for running attempts to notice an early end before giving up on them
+    private static final long STOP_GRACE_MILLIS = 2_000;
+
+    enum Outcome {
+        COMPLETED, DEADLINE_EXCEEDED, FAILURE_BUDGET_EXHAUSTED, CANCELLED
+    }
+
+    private final long deadlineNanos;
+    private final boolean hasDeadline;
+    private final int failureBudget;
+    // Forked tasks that haven't finished, plus one until join is called
+    private final AtomicInteger pending = new AtomicInteger(1);
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    // Tasks that finished without running after an early end; guarded by this, like pending once the scope has ended
+    private int abandoned;
+    // Threads between enter and detach; guarded by themselves, so end never interrupts a thread that has moved on
+    private final Set<Thread> runningThreads = new HashSet<>();
+    private final Set<CompletableFuture<?>> inFlight = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch ended = new CountDownLatch(1);
+    private volatile Outcome outcome;
+
+    // A null deadline means none
+    CrawlScope(Duration deadline, int failureBudget) {
+        if (failureBudget < 0) throw new IllegalArgumentException("Failure budget must not be negative");
+        this.hasDeadline = deadline != null;
+        this.deadlineNanos = hasDeadline ? System.nanoTime() + deadline.toNanos() : 0;
+        this.failureBudget = failureBudget;
+    }
+
+    void fork() {
+        pending.incrementAndGet();
+    }
+
+    void finished() {
+        Outcome current = outcome;
+        if (current != null && current != Outcome.COMPLETED) {
+            synchronized (this) {
+                abandoned++;
+                pending.decrementAndGet();
+            }
+            return;
+        }
+        if (pending.decrementAndGet() == 0) end(Outcome.COMPLETED);
+    }
+
+    // A task that gave up; the scope ends once more than failureBudget have
+    void failed() {
+        if (failures.incrementAndGet() > failureBudget) end(Outcome.FAILURE_BUDGET_EXHAUSTED);
+    }
+
+    // Starts an attempt on the calling thread, which can be interrupted until detach. False once the scope has
+    // ended, in which case the task should just finish
+    boolean enter() {
+        running.incrementAndGet();
+        synchronized (runningThreads) {
+            runningThreads.add(Thread.currentThread());
+        }
+        // Registered before checking, so end() either sees this thread or this sees the outcome
+        if (outcome != null) {
+            detach();
+            exit();
+            return false;
+        }
+        return true;
+    }
+
+    // The attempt goes on asynchronously and no longer owns the calling thread. An interrupt the scope sent it that
+    // the attempt didn't consume is cleared, so it doesn't reach the thread's next task
+    void detach() {
+        synchronized (runningThreads) {
+            runningThreads.remove(Thread.currentThread());
+            Outcome current = outcome;
+            if (current != null && current != Outcome.COMPLETED) Thread.interrupted();
+        }
+    }
+
+    void exit() {
+        if (running.decrementAndGet() == 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    // Cancels the future if the scope ends before it completes
+    <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        if (future.isDone()) return future;
+        inFlight.add(future);
+        future.whenComplete((result, error) -> inFlight.remove(future));
+        if (outcome != null) future.cancel(true);
+        return future;
+    }
+
+    boolean isEnded() {
+        return outcome != null;
+    }
+
+    void cancel() {
+        end(Outcome.CANCELLED);
+    }
+
+    // Tasks cut short by an early end, whether they were still queued or running
+    synchronized int abandonedTasks() {
+        Outcome current = outcome;
+        return current == null || current == Outcome.COMPLETED ? 0 : abandoned + Math.max(0, pending.get());
+    }
+
+    int pendingTasks() {
+        return pending.get();
+    }
+
+    int failedTasks() {
+        return failures.get();
+    }
+
+    // Waits for the tasks to finish or the scope to end early. If the calling thread is interrupted the scope is
+    // cancelled and the interrupt is passed on
+    Outcome join() throws InterruptedException {
+        if (pending.decrementAndGet() == 0) end(Outcome.COMPLETED);
+        try {
+            if (!hasDeadline) {
+                ended.await();
+            } else if (!ended.await(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                end(Outcome.DEADLINE_EXCEEDED);
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            awaitStopped();
+            throw e;
+        }
+        awaitStopped();
+        return outcome;
+    }
+
+    private void end(Outcome reason) {
+        synchronized (this) {
+            if (outcome != null) return;
+            outcome = reason;
+        }
+        ended.countDown();
+        if (reason == Outcome.COMPLETED) return;
+
+        for (CompletableFuture<?> future : inFlight) {
+            future.cancel(true);
+        }
+        synchronized (runningThreads) {
+            for (Thread thread : runningThreads) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    private synchronized void awaitStopped() {
+        long giveUpAt = System.currentTimeMillis() + STOP_GRACE_MILLIS;
+        boolean interrupted = false;
+        while (running.get() > 0) {
+            long remaining = giveUpAt - System.currentTimeMillis();
+            if (remaining <= 0) {
+                logger.warn(running.get() + " attempt(s) still running after the crawl ended, abandoning them");
+                break;
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
@@ -0,0 +1,234 @@
+package multithreading;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Persistent response cache keyed by URL. Each entry keeps the validators (ETag/Last-Modified) and the extracted
+// title, links and fingerprint in one file, so a 304 on a later run skips both the transfer and the re-parse.
+// Nothing needs the raw body after extraction, so it isn't kept.
+// The directory is kept under maxBytes by evicting the least recently used entries
+class DiskResponseCache {
+    private static final Logger logger = LogManager.getLogger();
+    // "SCRE"; older entries, which also held the body ("SCRD") or had no fingerprint ("SCRC"), read as misses and get
+    // replaced
+    private static final int MAGIC = 0x53435245;
+    private static final String SUFFIX = ".entry";
+
+    private final Path directory;
+    private final long maxBytes;
+    // Entry key to file size, in access order; file mtimes carry the order across runs
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    DiskResponseCache(Path directory, long maxBytes) throws IOException {
+        if (maxBytes <= 0) throw new IllegalArgumentException("Cache size must be positive");
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        loadIndex();
+    }
+
+    static class CachedResponse {
+        private final String etag;
+        private final String lastModified;
+        private final ScrapedData data;
+
+        CachedResponse(String etag, String lastModified, ScrapedData data) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.data = data;
+        }
+
+        public ScrapedData getData() {
+            return data;
+        }
+
+        // Headers that turn the next fetch into a conditional GET
+        public Map<String, String> validators() {
+            Map<String, String> headers = new HashMap<>();
+            if (etag != null) headers.put("If-None-Match", etag);
+            if (lastModified != null) headers.put("If-Modified-Since", lastModified);
+            return headers;
+        }
+    }
+
+    // Returns the cached entry, or null if the URL isn't cached. Its links are interned into linkTable
+    CachedResponse lookup(String url, LinkTable linkTable) {
+        String key = keyOf(url);
+        synchronized (this) {
+            // get, not containsKey, so the hit counts towards the LRU order
+            if (index.get(key) == null) return null;
+        }
+
+        Path file = directory.resolve(key + SUFFIX);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || !url.equals(readString(in))) return null;
+            String etag = readString(in);
+            String lastModified = readString(in);
+            String title = readString(in);
+            int linkCount = in.readInt();
+            List<String> links = new ArrayList<>(linkCount);
+            for (int i = 0; i < linkCount; i++) {
+                links.add(readString(in));
+            }
+            long fingerprint = in.readLong();
+
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return new CachedResponse(etag, lastModified, new ScrapedData(title, links, linkTable, fingerprint));
+        } catch (NoSuchFileException e) {
+            forget(key);
+            return null;
+        } catch (IOException e) {
+            logger.warn("Dropping unreadable cache entry for " + url + " : " + e.getMessage());
+            remove(key);
+            return null;
+        }
+    }
+
+    // Only responses carrying a validator are worth keeping, nothing else can be revalidated
+    void store(FetchedPage page, ScrapedData data) {
+        if (page.getEtag() == null && page.getLastModified() == null) return;
+
+        String key = keyOf(page.getUrl());
+        Path file = directory.resolve(key + SUFFIX);
+        Path temp = directory.resolve(key + SUFFIX + "." + Thread.currentThread().threadId() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                writeString(out, page.getUrl());
+                writeString(out, page.getEtag());
+                writeString(out, page.getLastModified());
+                writeString(out, data.getTitle());
+                out.writeInt(data.getLinks().size());
+                for (String link : data.getLinks()) {
+                    writeString(out, link);
+                }
+                out.writeLong(data.getFingerprint());
+            }
+            long size = Files.size(temp);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            added(key, size);
+        } catch (IOException e) {
+            logger.error("Error caching " + page.getUrl() + " : " + e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // nothing more to clean up
+            }
+        }
+    }
+
+    private synchronized void added(String key, long size) {
+        Long previous = index.put(key, size);
+        totalBytes += size - (previous == null ? 0 : previous);
+        evict();
+    }
+
+    private synchronized void forget(String key) {
+        Long size = index.remove(key);
+        if (size != null) totalBytes -= size;
+    }
+
+    private synchronized void remove(String key) {
+        forget(key);
+        try {
+            Files.deleteIfExists(directory.resolve(key + SUFFIX));
+        } catch (IOException e) {
+            logger.error("Error deleting cache entry " + key + " : " + e.getMessage());
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = index.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            totalBytes -= entry.getValue();
+            try {
+                Files.deleteIfExists(directory.resolve(entry.getKey() + SUFFIX));
+            } catch (IOException e) {
+                logger.error("Error evicting cache entry " + entry.getKey() + " : " + e.getMessage());
+            }
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) Files.deleteIfExists(file);
+                else if (name.endsWith(SUFFIX)) files.add(file);
+            }
+        }
+
+        Map<Path, FileTime> modified = new HashMap<>();
+        for (Path file : files) {
+            modified.put(file, Files.getLastModifiedTime(file));
+        }
+        files.sort(Comparator.comparing(modified::get));
+
+        synchronized (this) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long size = Files.size(file);
+                index.put(name.substring(0, name.length() - SUFFIX.length()), size);
+                totalBytes += size;
+            }
+            evict();
+        }
+        logger.info("Response cache at " + directory + " holds " + index.size() + " entries (" + totalBytes + " bytes)");
+    }
+
+    static String keyOf(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(40);
+            for (int i = 0; i < 20; i++) {
+                key.append(String.format("%02x", digest[i]));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Length-prefixed UTF-8, with -1 standing for null; writeUTF would cap strings at 64KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+}
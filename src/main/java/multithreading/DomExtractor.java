@@ -0,0 +1,34 @@
+package multithreading;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.select.Elements;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class DomExtractor implements PageExtractor {
+    @Override
+    public ScrapedData extract(FetchedPage page, LinkTable links, boolean fingerprint) {
+        Document doc;
+        try {
+            doc = Jsoup.parse(new ByteArrayInputStream(page.getBody()), page.getCharset(), page.getUrl());
+        } catch (IOException e) {
+            // Only an undecodable body ends up here, retrying the fetch wouldn't help
+            throw new UncheckedIOException(e);
+        }
+
+        String title = doc.title();
+        Elements anchors = doc.select("a[href]");
+        List<String> linksList = anchors.eachAttr("href");
+        if (!fingerprint) return new ScrapedData(title, linksList, links);
+
+        SimHash simHash = new SimHash();
+        byte[] text = doc.body() == null ? new byte[0] : doc.body().text().getBytes(StandardCharsets.UTF_8);
+        simHash.add(text, 0, text.length);
+        return new ScrapedData(title, linksList, links, simHash.value());
+    }
+}
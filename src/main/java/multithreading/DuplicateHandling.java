@@ -0,0 +1,11 @@
+package multithreading;
+
+// What Scraper does with a page whose text is a near duplicate of a page already scraped in the same crawl
+enum DuplicateHandling {
+    // No fingerprint comparison, the original behaviour
+    OFF,
+    // Store the page marked with the URL of the original, but don't follow its links
+    FLAG,
+    // Drop the page and its links
+    SKIP;
+}
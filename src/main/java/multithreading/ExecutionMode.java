@@ -0,0 +1,9 @@
+package multithreading;
+
+// How Scraper runs its fetch tasks
+enum ExecutionMode {
+    // One platform thread per core, the original behaviour
+    FIXED_POOL,
+    // One virtual thread per URL, fetches capped by Scraper's permit count
+    VIRTUAL_THREADS;
+}
@@ -0,0 +1,17 @@
+package multithreading;
+
+enum ExtractionMode {
+    // Full Jsoup Document, then title() and a[href]
+    DOM,
+    // Single pass over the bytes without building a tree, falls back to DOM for pages it can't tokenise
+    STREAMING;
+
+    PageExtractor create() {
+        switch (this) {
+            case STREAMING:
+                return new StreamingExtractor(new DomExtractor());
+            default:
+                return new DomExtractor();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package multithreading;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Compares DOM and streaming extraction on saved pages: ExtractorBenchmark [directoryOfHtmlFiles] [iterations].
+// Without a directory it generates Wikipedia-sized article pages
+public class ExtractorBenchmark {
+    private static final Logger logger = LogManager.getLogger();
+
+    public static void main(String[] args) throws IOException {
+        List<FetchedPage> pages = args.length > 0 && !args[0].isEmpty() ? load(Path.of(args[0])) : generate(20, 42);
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long totalBytes = 0;
+        for (FetchedPage page : pages) {
+            totalBytes += page.getBody().length;
+        }
+        logger.info("Benchmarking on " + pages.size() + " pages, " + totalBytes / 1024 + " KB");
+
+        PageExtractor dom = ExtractionMode.DOM.create();
+        PageExtractor streaming = ExtractionMode.STREAMING.create();
+
+        int mismatches = 0;
+        for (FetchedPage page : pages) {
+            LinkTable links = new LinkTable();
+            ScrapedData expected = dom.extract(page, links, true);
+            ScrapedData actual = streaming.extract(page, links, true);
+            if (!expected.getTitle().equals(actual.getTitle()) || !expected.getLinks().equals(actual.getLinks())) {
+                mismatches++;
+                logger.warn("Extractors disagree on " + page.getUrl());
+            }
+        }
+        logger.info("Extractors agree on " + (pages.size() - mismatches) + "/" + pages.size() + " pages");
+
+        for (ExtractionMode mode : ExtractionMode.values()) {
+            // Without and with the text fingerprint, which only crawls that look for near duplicates compute
+            for (boolean fingerprint : new boolean[]{false, true}) {
+                benchmark(mode, fingerprint, pages, totalBytes, iterations);
+            }
+        }
+    }
+
+    private static void benchmark(ExtractionMode mode, boolean fingerprint, List<FetchedPage> pages, long totalBytes, int iterations) {
+        PageExtractor extractor = mode.create();
+        run(extractor, fingerprint, pages, Math.max(1, iterations / 2)); // warm up
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        run(extractor, fingerprint, pages, iterations);
+        long elapsedNanos = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        long extracted = (long) pages.size() * iterations;
+        logger.info(String.format("%s%s: %.1f pages/sec, %.1f MB/sec, %d KB allocated per page",
+                mode, fingerprint ? " with fingerprints" : "", extracted * 1e9 / elapsedNanos,
+                totalBytes * (double) iterations * 1e9 / elapsedNanos / (1024 * 1024), allocated / extracted / 1024));
+    }
+
+    private static void run(PageExtractor extractor, boolean fingerprint, List<FetchedPage> pages, int iterations) {
+        long links = 0;
+        for (int i = 0; i < iterations; i++) {
+            // A table per pass, as a crawl has one, so interning costs what it would there
+            LinkTable table = new LinkTable();
+            for (FetchedPage page : pages) {
+                links += extractor.extract(page, table, fingerprint).getLinkIds().length;
+            }
+        }
+        if (links < 0) logger.debug(links); // keeps the loop from being optimised away
+    }
+
+    private static List<FetchedPage> load(Path directory) throws IOException {
+        List<FetchedPage> pages = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.{html,htm}")) {
+            for (Path file : files) {
+                pages.add(new FetchedPage(file.toUri().toString(), 200, Files.readAllBytes(file), null));
+            }
+        }
+        return pages;
+    }
+
+    // Roughly the shape of a long Wikipedia article: chrome, scripts, nested divs, tables, references and ~1500 links
+    static List<FetchedPage> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<FetchedPage> pages = new ArrayList<>(count);
+        for (int p = 0; p < count; p++) {
+            StringBuilder html = new StringBuilder(400_000);
+            html.append("<!DOCTYPE html>\n<html lang=\"en\"><head><meta charset=\"UTF-8\">")
+                    .append("<title>Article ").append(p).append(" &amp; history - Wikipedia</title>")
+                    .append("<script>var conf = {\"wgPageName\":\"Article_").append(p).append("\", \"x\": \"<a href='/nope'>\"};</script>")
+                    .append("<style>.mw-body { color: #202122 } a > b { }</style></head><body>")
+                    .append("<a href=\"#bodyContent\">Jump to content</a>")
+                    .append("<a href=\"/wiki/Main_Page\">Main page</a><a href=\"/wiki/Special:Random\">Random article</a>")
+                    .append("<!-- <a href=\"/commented-out\">old</a> -->");
+            for (int section = 0; section < 40; section++) {
+                html.append("<div class=\"mw-heading\"><h2 id=\"s").append(section).append("\">Section ").append(section).append("</h2></div>");
+                for (int paragraph = 0; paragraph < 6; paragraph++) {
+                    html.append("<div><p>");
+                    for (int sentence = 0; sentence < 6; sentence++) {
+                        html.append("Lorem ipsum dolor sit amet, <b>consectetur</b> adipiscing elit, sed do eiusmod tempor ");
+                        int target = random.nextInt(50_000);
+                        html.append("<a href=\"/wiki/Topic_").append(target).append("\" title=\"Topic ").append(target)
+                                .append("\">topic ").append(target).append("</a> incididunt ut labore&nbsp;et dolore. ");
+                    }
+                    html.append("<sup class=\"reference\"><a href=\"#cite_note-").append(section * 6 + paragraph)
+                            .append("\">[").append(section * 6 + paragraph).append("]</a></sup></p></div>");
+                }
+                html.append("<table class=\"wikitable\"><tr><th>Year</th><th>Value</th></tr>");
+                for (int row = 0; row < 5; row++) {
+                    html.append("<tr><td>").append(1900 + row).append("</td><td><a href='/wiki/Year_").append(1900 + row)
+                            .append("'>").append(random.nextInt(1000)).append("</a></td></tr>");
+                }
+                html.append("</table>");
+            }
+            html.append("<ol class=\"references\">");
+            for (int ref = 0; ref < 240; ref++) {
+                html.append("<li id=\"cite_note-").append(ref).append("\"><a href=\"https://example.org/source?id=")
+                        .append(ref).append("&amp;lang=en\" rel=nofollow>Source ").append(ref).append("</a></li>");
+            }
+            html.append("</ol></body></html>");
+            pages.add(new FetchedPage("https://en.wikipedia.org/wiki/Article_" + p, 200,
+                    html.toString().getBytes(StandardCharsets.UTF_8), "UTF-8"));
+        }
+        return pages;
+    }
+}
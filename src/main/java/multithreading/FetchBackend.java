@@ -0,0 +1,17 @@
+package multithreading;
+
+enum FetchBackend {
+    // Jsoup's blocking connector, the fetch holds the calling thread
+    JSOUP,
+    // java.net.http.HttpClient with HTTP/2 and connection reuse, fetches don't hold a thread
+    HTTP_CLIENT;
+
+    PageFetcher create() {
+        switch (this) {
+            case HTTP_CLIENT:
+                return new HttpClientFetcher();
+            default:
+                return new JsoupFetcher();
+        }
+    }
+}
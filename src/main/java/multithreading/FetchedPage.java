@@ -0,0 +1,56 @@
+package multithreading;
+
+// Raw response for a page, before any parsing
+class FetchedPage {
+    static final int NOT_MODIFIED = 304;
+
+    private final String url;
+    private final int statusCode;
+    private final byte[] body;
+    private final String charset;
+    private final String etag;
+    private final String lastModified;
+
+    public FetchedPage(String url, int statusCode, byte[] body, String charset, String etag, String lastModified) {
+        this.url = url;
+        this.statusCode = statusCode;
+        this.body = body;
+        this.charset = charset;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    public FetchedPage(String url, int statusCode, byte[] body, String charset) {
+        this(url, statusCode, body, charset, null, null);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    // Null when the server didn't declare one, the parser then sniffs it from the document
+    public String getCharset() {
+        return charset;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    // The server confirmed a conditional request, the body is empty and the cached copy is still valid
+    public boolean isNotModified() {
+        return statusCode == NOT_MODIFIED;
+    }
+}
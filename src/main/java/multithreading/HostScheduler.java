@@ -0,0 +1,101 @@
+package multithreading;
+
+import java.net.URI;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Sits between task submission and the workers: each host gets its own ready-queue and token bucket,
+// so a host's request rate stays capped while different hosts are dispatched independently
+class HostScheduler {
+    static final double UNLIMITED = Double.POSITIVE_INFINITY;
+
+    private final Executor workers;
+    private final double permitsPerSecond;
+    private final int burst;
+    private final ConcurrentMap<String, HostQueue> hosts = new ConcurrentHashMap<>();
+    // Tasks waiting in the host ready-queues for a token
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "host-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    HostScheduler(Executor workers, double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) throw new IllegalArgumentException("Rate must be positive");
+        this.workers = workers;
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+    }
+
+    void submit(String url, Runnable task) {
+        if (permitsPerSecond == UNLIMITED) {
+            workers.execute(task);
+            return;
+        }
+        HostQueue queue = hosts.computeIfAbsent(hostOf(url), host -> new HostQueue());
+        queued.incrementAndGet();
+        queue.ready.add(task);
+        queue.kick();
+    }
+
+    // Submits the task after a delay without holding any thread while waiting
+    void submitLater(String url, Runnable task, long delayMillis) {
+        timer.schedule(() -> submit(url, task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    int queuedTasks() {
+        return queued.get();
+    }
+
+    void shutdown() {
+        timer.shutdownNow();
+    }
+
+    static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? "" : host;
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    private final class HostQueue {
+        private final TokenBucket bucket = new TokenBucket(permitsPerSecond, burst);
+        private final Queue<Runnable> ready = new ConcurrentLinkedQueue<>();
+        // Only the thread that flips this flag drains, so a polled task is never lost between threads
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private void kick() {
+            if (draining.compareAndSet(false, true)) drain();
+        }
+
+        private void drain() {
+            while (true) {
+                if (ready.isEmpty()) {
+                    draining.set(false);
+                    // A task may have been added after the emptiness check but before the flag was cleared
+                    if (ready.isEmpty() || !draining.compareAndSet(false, true)) return;
+                    continue;
+                }
+
+                long waitNanos = bucket.tryAcquire();
+                if (waitNanos > 0) {
+                    timer.schedule(this::drain, waitNanos, TimeUnit.NANOSECONDS);
+                    return;
+                }
+                queued.decrementAndGet();
+                workers.execute(ready.poll());
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package multithreading;
+
+import org.jsoup.HttpStatusException;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Non-blocking fetches over a shared HttpClient: connections are pooled and multiplexed over HTTP/2 where the server
+// supports it, so thousands of requests can be in flight on a couple of platform threads
+class HttpClientFetcher implements PageFetcher {
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final ExecutorService clientExecutor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "http-client");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(clientExecutor)
+            .build();
+
+    @Override
+    public CompletableFuture<FetchedPage> fetch(String url, Map<String, String> requestHeaders) {
+        HttpRequest request;
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).timeout(TIMEOUT).GET();
+            requestHeaders.forEach(builder::header);
+            request = builder.build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> {
+            int status = response.statusCode();
+            if ((status < 200 || status >= 300) && status != FetchedPage.NOT_MODIFIED) {
+                // Same exception Jsoup's connector throws, so retry handling doesn't depend on the backend
+                throw new CompletionException(new HttpStatusException("HTTP error fetching URL", status, url));
+            }
+            HttpHeaders headers = response.headers();
+            String contentType = headers.firstValue("Content-Type").orElse("");
+            return new FetchedPage(url, status, response.body(), charsetOf(contentType),
+                    headers.firstValue("ETag").orElse(null), headers.firstValue("Last-Modified").orElse(null));
+        });
+    }
+
+    static String charsetOf(String contentType) {
+        int index = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (index < 0) return null;
+
+        String charset = contentType.substring(index + "charset=".length()).trim();
+        int end = charset.indexOf(';');
+        if (end >= 0) charset = charset.substring(0, end);
+        charset = charset.replace("\"", "").trim();
+        return charset.isEmpty() ? null : charset;
+    }
+
+    @Override
+    public void close() {
+        client.close();
+        clientExecutor.shutdownNow();
+    }
+}
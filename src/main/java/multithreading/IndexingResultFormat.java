@@ -0,0 +1,56 @@
+package multithreading;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+// Adds every record written through another format to a ResultIndex, on the writer thread so the crawl never waits
+// for it. The index is saved next to the results on flushes at most SAVE_INTERVAL_MILLIS apart and when the format
+// is closed; records written after the last save are picked up again from the segments by ResultIndex.open
+class IndexingResultFormat implements ResultFormat {
+    private static final long SAVE_INTERVAL_MILLIS = 30_000;
+
+    private final ResultFormat format;
+    private final ResultIndex index;
+    private final Path indexFile;
+    private long lastSave = System.currentTimeMillis();
+
+    IndexingResultFormat(ResultFormat format, ResultIndex index, Path indexFile) {
+        this.format = format;
+        this.index = index;
+        this.indexFile = indexFile;
+    }
+
+    ResultIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public void write(String url, ScrapedData data) throws IOException {
+        format.write(url, data);
+        index.add(url, data);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        format.flush();
+        if (System.currentTimeMillis() - lastSave >= SAVE_INTERVAL_MILLIS) save();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            format.close();
+        } finally {
+            save();
+        }
+    }
+
+    // Only after the records reached the segments, so the index never claims a segment holds more than it does
+    private void save() throws IOException {
+        lastSave = System.currentTimeMillis();
+        List<Path> segments = SegmentReader.segments(indexFile.toAbsolutePath().getParent());
+        if (!segments.isEmpty()) index.setSegmentsSeen(segments.get(segments.size() - 1).getFileName().toString());
+        if (index.isDirty()) index.save(indexFile);
+    }
+}
@@ -0,0 +1,23 @@
+package multithreading;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Blocking fetch on the calling thread; the returned future is already complete
+class JsoupFetcher implements PageFetcher {
+    @Override
+    public CompletableFuture<FetchedPage> fetch(String url, Map<String, String> requestHeaders) {
+        try {
+            // Jsoup only throws HttpStatusException from 400 up, so a 304 comes back as a normal response
+            Connection.Response response = Jsoup.connect(url).headers(requestHeaders).execute();
+            return CompletableFuture.completedFuture(new FetchedPage(url, response.statusCode(),
+                    response.bodyAsBytes(), response.charset(), response.header("ETag"), response.header("Last-Modified")));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
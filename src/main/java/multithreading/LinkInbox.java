@@ -0,0 +1,12 @@
+package multithreading;
+
+// The crawl's side of a LinkRouter, through which forwarded links arrive
+interface LinkInbox {
+    void receive(String url, int depth);
+
+    // True when the crawl has no page queued or in flight
+    boolean isIdle();
+
+    // No more links will arrive; the crawl ends once its own pages are done
+    void close();
+}
@@ -0,0 +1,13 @@
+package multithreading;
+
+// Lets a crawl share its frontier with crawls in other processes: links to URLs the router doesn't own are
+// forwarded instead of fetched, and links forwarded by the others arrive through the crawl's inbox. The crawl keeps
+// running, even when it has nothing to fetch, until the router closes the inbox
+interface LinkRouter {
+    boolean owns(String url);
+
+    void forward(String url, int depth);
+
+    // Called once as the crawl starts
+    void open(LinkInbox inbox);
+}
@@ -0,0 +1,77 @@
+package multithreading;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Concurrent dictionary of extracted hrefs: each distinct href is stored once and pages refer to it by int id.
+// Ids are dense and never reused, so resolving one is two array reads. A table only grows, so each crawl, and each
+// segment being read, interns into its own and it goes away with the pages referring to it
+class LinkTable {
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    // id -> href, grown a chunk at a time so existing chunks never move
+    private volatile String[][] chunks = new String[16][];
+    private int size;
+
+    int intern(String link) {
+        Integer id = ids.get(link);
+        if (id != null) return id;
+        return ids.computeIfAbsent(link, this::append);
+    }
+
+    int[] internAll(List<String> links) {
+        int[] result = new int[links.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = intern(links.get(i));
+        }
+        return result;
+    }
+
+    String resolve(int id) {
+        // The slot is written before the id is published through the map, so any id a caller holds is readable
+        String[][] current = chunks;
+        if (id < 0 || (id >>> CHUNK_BITS) >= current.length || current[id >>> CHUNK_BITS] == null) {
+            throw new IndexOutOfBoundsException("Unknown link id " + id);
+        }
+        return current[id >>> CHUNK_BITS][id & (CHUNK_SIZE - 1)];
+    }
+
+    // Read-only view resolving ids on access
+    List<String> resolveAll(int[] linkIds) {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return resolve(linkIds[index]);
+            }
+
+            @Override
+            public int size() {
+                return linkIds.length;
+            }
+        };
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private synchronized int append(String link) {
+        int id = size;
+        int chunk = id >>> CHUNK_BITS;
+        String[][] current = chunks;
+        if (chunk >= current.length) {
+            String[][] grown = new String[current.length * 2][];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            current = grown;
+        }
+        if (current[chunk] == null) current[chunk] = new String[CHUNK_SIZE];
+        current[chunk][id & (CHUNK_SIZE - 1)] = link;
+        chunks = current;
+        size++;
+        return id;
+    }
+}
@@ -0,0 +1,7 @@
+package multithreading;
+
+// Turns a fetched page into its title and anchor hrefs, interning the hrefs into links. With fingerprint set the
+// SimHash of the page text is computed too, otherwise the data's fingerprint is 0
+interface PageExtractor {
+    ScrapedData extract(FetchedPage page, LinkTable links, boolean fingerprint);
+}
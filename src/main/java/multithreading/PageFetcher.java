@@ -0,0 +1,18 @@
+package multithreading;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Fetch backend used by Scraper; failed fetches complete exceptionally with an IOException.
+// A 304 in answer to conditional request headers completes normally, see FetchedPage.isNotModified()
+interface PageFetcher extends AutoCloseable {
+    CompletableFuture<FetchedPage> fetch(String url, Map<String, String> requestHeaders);
+
+    default CompletableFuture<FetchedPage> fetch(String url) {
+        return fetch(url, Map.of());
+    }
+
+    @Override
+    default void close() {
+    }
+}
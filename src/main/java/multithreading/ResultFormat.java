@@ -0,0 +1,12 @@
+package multithreading;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// On-disk encoding used by ResultWriter; only ever called from the writer thread
+interface ResultFormat extends Closeable {
+    void write(String url, ScrapedData data) throws IOException;
+
+    // Called for ResultWriter.flush, everything written so far should survive the process dying
+    void flush() throws IOException;
+}
@@ -0,0 +1,393 @@
+package multithreading;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Inverted index over scraped pages, kept up to date as results are written: title terms and link targets each map
+// to the ids of the pages containing them. Pages get ids in arrival order, so every posting list is sorted and is
+// stored as varint gaps, appending a page costs a few bytes. Link targets are resolved against the page URL and
+// normalized like the crawl frontier does, so backlinks(url) finds relative links too. A URL indexed again, by a
+// later crawl or a resumed one, gets a new id that replaces the old one: the old id's postings stop matching and are
+// dropped when the index is compacted on save.
+//
+// The index is saved as one file next to the results; segmentsSeen records the newest segment it covers, so
+// opening it only re-reads segments written after the last save.
+//
+// Usage: ResultIndex [segmentDirectory=logs/segments] (search <terms...> | backlinks <url>)
+class ResultIndex {
+    private static final Logger logger = LogManager.getLogger();
+    private static final int MAGIC = 0x53435249; // "SCRI"
+    private static final byte VERSION = 1;
+    static final String FILE_NAME = "results.idx";
+
+    private final List<String> urls = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final Map<String, PostingList> terms = new HashMap<>();
+    private final Map<String, PostingList> linkTargets = new HashMap<>();
+    // Ids replaced by a later copy of their URL
+    private final BitSet superseded = new BitSet();
+    private int supersededCount;
+    // File name of the newest segment whose records are all indexed, null if none
+    private String segmentsSeen;
+    private boolean dirty;
+
+    // Indexes a page, replacing what was indexed for its URL before
+    void add(String url, ScrapedData data) {
+        add(url, data.getTitle(), data.getLinks());
+    }
+
+    synchronized void add(String url, String title, List<String> links) {
+        int id = urls.size();
+        urls.add(url);
+        supersede(ids.put(url, id));
+
+        for (String term : tokenize(title)) {
+            terms.computeIfAbsent(term, key -> new PostingList()).add(id);
+        }
+        for (String href : links) {
+            String target = CrawlFrontier.normalize(url, href);
+            if (target != null) linkTargets.computeIfAbsent(target, key -> new PostingList()).add(id);
+        }
+        dirty = true;
+    }
+
+    private void supersede(Integer id) {
+        if (id == null) return;
+        superseded.set(id);
+        supersededCount++;
+    }
+
+    // Pages whose titles contain every term of the query, in the order they were scraped
+    synchronized List<String> search(String query) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) return List.of();
+
+        List<PostingList> lists = new ArrayList<>();
+        for (String term : queryTerms) {
+            PostingList list = terms.get(term);
+            if (list == null) return List.of();
+            lists.add(list);
+        }
+        // Intersecting from the rarest term keeps every intermediate result as small as possible
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+        int[] matches = lists.get(0).decode();
+        for (int i = 1; i < lists.size() && matches.length > 0; i++) {
+            matches = intersect(matches, lists.get(i).decode());
+        }
+        return urlsOf(matches);
+    }
+
+    // Pages with a link to url, in the order they were scraped
+    synchronized List<String> backlinks(String url) {
+        String target = CrawlFrontier.normalize(null, url);
+        PostingList list = target == null ? null : linkTargets.get(target);
+        return list == null ? List.of() : urlsOf(list.decode());
+    }
+
+    synchronized int size() {
+        return ids.size();
+    }
+
+    synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    synchronized void setSegmentsSeen(String segmentsSeen) {
+        if (!segmentsSeen.equals(this.segmentsSeen)) dirty = true;
+        this.segmentsSeen = segmentsSeen;
+    }
+
+    private List<String> urlsOf(int[] docs) {
+        List<String> result = new ArrayList<>(docs.length);
+        for (int doc : docs) {
+            if (!superseded.get(doc)) result.add(urls.get(doc));
+        }
+        return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // Lower-cased runs of letters and digits
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    // Writes the index under a temporary name and renames it over the previous one, compacting it first once a
+    // quarter of its ids are superseded
+    synchronized void save(Path file) throws IOException {
+        if (supersededCount > urls.size() / 4) compact();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            writeString(out, segmentsSeen);
+            out.writeInt(urls.size());
+            for (String url : urls) {
+                writeString(out, url);
+            }
+            writePostings(out, terms);
+            writePostings(out, linkTargets);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+
+    // Drops the superseded ids, renumbering the rest in the same order so every posting list stays sorted
+    private void compact() {
+        int[] newIds = new int[urls.size()];
+        List<String> live = new ArrayList<>(ids.size());
+        for (int id = 0; id < urls.size(); id++) {
+            if (superseded.get(id)) {
+                newIds[id] = -1;
+            } else {
+                newIds[id] = live.size();
+                live.add(urls.get(id));
+            }
+        }
+        compact(terms, newIds);
+        compact(linkTargets, newIds);
+
+        urls.clear();
+        urls.addAll(live);
+        ids.clear();
+        for (int id = 0; id < urls.size(); id++) {
+            ids.put(urls.get(id), id);
+        }
+        superseded.clear();
+        supersededCount = 0;
+    }
+
+    private static void compact(Map<String, PostingList> postings, int[] newIds) {
+        Iterator<Map.Entry<String, PostingList>> entries = postings.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, PostingList> entry = entries.next();
+            PostingList compacted = new PostingList();
+            for (int id : entry.getValue().decode()) {
+                if (newIds[id] >= 0) compacted.add(newIds[id]);
+            }
+            if (compacted.size == 0) {
+                entries.remove();
+            } else {
+                entry.setValue(compacted);
+            }
+        }
+    }
+
+    // The saved index, or an empty one if there is none
+    static ResultIndex load(Path file) throws IOException {
+        ResultIndex index = new ResultIndex();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a result index: " + file);
+            byte version = in.readByte();
+            if (version != VERSION) throw new IOException("Unsupported index version " + version + " in " + file);
+            index.segmentsSeen = readString(in);
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String url = readString(in);
+                index.supersede(index.ids.put(url, index.urls.size()));
+                index.urls.add(url);
+            }
+            readPostings(in, index.terms);
+            readPostings(in, index.linkTargets);
+        } catch (NoSuchFileException e) {
+            return index;
+        }
+        return index;
+    }
+
+    // Loads the index saved in a segment directory and adds the records of segments written since. A missing or
+    // unreadable index is rebuilt from all the segments; a damaged segment is indexed up to the damage
+    static ResultIndex open(Path segmentDirectory) throws IOException {
+        Path file = segmentDirectory.resolve(FILE_NAME);
+        ResultIndex index;
+        try {
+            index = load(file);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Rebuilding the result index, " + file + " is unreadable : " + e.getMessage());
+            index = new ResultIndex();
+        }
+
+        int added = 0;
+        String newest = null;
+        for (Path segment : SegmentReader.segments(segmentDirectory)) {
+            String name = segment.getFileName().toString();
+            newest = name;
+            // The newest segment seen may have grown after the save, so it is read again; its records indexed before
+            // replace themselves
+            if (index.segmentsSeen != null && name.compareTo(index.segmentsSeen) < 0) continue;
+            try (SegmentReader reader = new SegmentReader(segment)) {
+                for (SegmentReader.Record record : reader) {
+                    index.add(record.getUrl(), record.getTitle(), record.getLinks());
+                    added++;
+                }
+            } catch (IOException | UncheckedIOException e) {
+                logger.warn("Skipping the rest of segment " + segment + " : " + e.getMessage());
+            }
+        }
+        if (newest != null) index.setSegmentsSeen(newest);
+        if (added > 0) logger.info("Indexed " + added + " records from segments written since " + file + " was saved");
+        return index;
+    }
+
+    private static void writePostings(DataOutputStream out, Map<String, PostingList> postings) throws IOException {
+        out.writeInt(postings.size());
+        for (Map.Entry<String, PostingList> entry : postings.entrySet()) {
+            PostingList list = entry.getValue();
+            writeString(out, entry.getKey());
+            out.writeInt(list.size);
+            out.writeInt(list.last);
+            out.writeInt(list.length);
+            out.write(list.bytes, 0, list.length);
+        }
+    }
+
+    private static void readPostings(DataInputStream in, Map<String, PostingList> postings) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = readString(in);
+            PostingList list = new PostingList();
+            list.size = in.readInt();
+            list.last = in.readInt();
+            list.length = in.readInt();
+            list.bytes = in.readNBytes(list.length);
+            if (list.bytes.length != list.length) throw new IOException("Result index ends early");
+            postings.put(key, list);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) throw new IOException("Result index ends early");
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Sorted page ids, each stored as a varint of the gap from the previous one
+    private static final class PostingList {
+        private byte[] bytes = new byte[4];
+        private int length;
+        private int size;
+        private int last = -1;
+
+        // Ids only ever grow; a page repeating a term or link is added once
+        private void add(int id) {
+            if (id == last) return;
+            int gap = id - last;
+            if (length + 5 > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+            while ((gap & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((gap & 0x7F) | 0x80);
+                gap >>>= 7;
+            }
+            bytes[length++] = (byte) gap;
+            last = id;
+            size++;
+        }
+
+        private int[] decode() {
+            int[] ids = new int[size];
+            int id = -1;
+            int position = 0;
+            for (int i = 0; i < size; i++) {
+                int gap = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = bytes[position++];
+                    gap |= (b & 0x7F) << shift;
+                    if (b >= 0) break;
+                }
+                id += gap;
+                ids[i] = id;
+            }
+            return ids;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Path.of(args.length > 0 ? args[0] : "logs/segments");
+        String command = args.length > 1 ? args[1] : "search";
+        String query = args.length > 2 ? String.join(" ", Arrays.asList(args).subList(2, args.length)) : "";
+
+        long start = System.nanoTime();
+        ResultIndex index = open(directory);
+        if (index.isDirty()) index.save(directory.resolve(FILE_NAME));
+        long opened = System.nanoTime();
+
+        List<String> results;
+        switch (command) {
+            case "backlinks":
+                results = index.backlinks(query);
+                break;
+            case "search":
+                results = index.search(query);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command " + command + ", expected search or backlinks");
+        }
+        long answered = System.nanoTime();
+
+        for (String url : results) {
+            logger.info(url);
+        }
+        logger.info(results.size() + " results from " + index.size() + " pages; opened in "
+                + (opened - start) / 1_000_000 + " ms, answered in " + (answered - opened) / 1_000 + " us");
+    }
+}
@@ -0,0 +1,13 @@
+package multithreading;
+
+import java.io.IOException;
+
+// Receives each page as soon as it has been scraped; implementations may block to apply backpressure
+@FunctionalInterface
+interface ResultSink {
+    void accept(String url, ScrapedData data) throws InterruptedException;
+
+    // Returns once every page accepted so far has reached the sink's storage
+    default void flush() throws IOException, InterruptedException {
+    }
+}
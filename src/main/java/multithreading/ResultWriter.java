@@ -0,0 +1,159 @@
+package multithreading;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Streams results to disk while the crawl runs: producers hand records to a bounded queue and block when it is full,
+// a single writer thread drains it in batches and encodes them with the given format. The format is only flushed for
+// flush(), so formats that buffer (SegmentResultFormat's blocks) aren't cut short by every batch
+class ResultWriter implements ResultSink, AutoCloseable {
+    private static final Logger logger = LogManager.getLogger();
+    private static final Entry END = new Entry(null, null, null);
+
+    private final BlockingQueue<Entry> queue;
+    private final int batchSize;
+    private final ResultFormat format;
+    private final Thread writerThread;
+    private volatile boolean closed;
+    // Last write error, reported to the next flush
+    private volatile IOException failure;
+
+    ResultWriter(ResultFormat format, int queueCapacity, int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be positive");
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.format = format;
+        this.writerThread = new Thread(this::drain, "result-writer");
+        writerThread.start();
+    }
+
+    ResultWriter(String textPath, int queueCapacity, int batchSize) throws IOException {
+        this(new TextResultFormat(textPath), queueCapacity, batchSize);
+    }
+
+    @Override
+    public void accept(String url, ScrapedData data) throws InterruptedException {
+        if (closed) throw new IllegalStateException("Result writer is closed");
+        if (!put(new Entry(url, data, null))) throw new IllegalStateException("Result writer has stopped");
+    }
+
+    @Override
+    public void flush() throws IOException, InterruptedException {
+        if (closed) throw new IllegalStateException("Result writer is closed");
+        Entry marker = new Entry(null, null, new CountDownLatch(1));
+        if (!put(marker)) throw new IOException("Result writer has stopped");
+        while (!marker.flushed.await(1, TimeUnit.SECONDS)) {
+            if (!writerThread.isAlive()) throw new IOException("Result writer has stopped");
+        }
+        IOException error = failure;
+        if (error != null) {
+            failure = null;
+            throw error;
+        }
+    }
+
+    private void drain() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        boolean finished = false;
+        while (!finished) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                logger.error("Result writer interrupted, " + queue.size() + " records not written");
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+
+            try {
+                boolean flushRequested = false;
+                for (Entry entry : batch) {
+                    if (entry == END) {
+                        finished = true;
+                        break;
+                    }
+                    if (entry.flushed == null) {
+                        format.write(entry.url, entry.data);
+                    } else {
+                        flushRequested = true;
+                    }
+                }
+                if (flushRequested) format.flush();
+            } catch (IOException | RuntimeException e) {
+                // Reported like a write error, the writer keeps draining so producers never block on a queue nobody
+                // takes from. An Error ends the writer; producers see it has stopped and fail instead of waiting
+                logger.error("Error writing to file: " + e.getMessage());
+                failure = e instanceof IOException ? (IOException) e : new IOException(e);
+            } catch (Error e) {
+                // So the flushes released below report it rather than return as if their records were written
+                failure = new IOException("Result writer stopped", e);
+                throw e;
+            } finally {
+                // Markers are released only after the records queued before them have been flushed
+                for (Entry entry : batch) {
+                    if (entry.flushed != null) entry.flushed.countDown();
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    // Waits for everything already queued to reach the file. An interrupt doesn't cut the wait short, since the
+    // format can't be closed under a running writer; it is passed on once the writer has stopped
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        boolean interrupted = false;
+        boolean queued = false;
+        while (!queued) {
+            try {
+                put(END);
+                queued = true;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        while (writerThread.isAlive()) {
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        try {
+            format.close();
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    // Waits for room in the queue as long as the writer thread runs; false if it has stopped
+    private boolean put(Entry entry) throws InterruptedException {
+        if (!writerThread.isAlive()) return false;
+        while (!queue.offer(entry, 1, TimeUnit.SECONDS)) {
+            if (!writerThread.isAlive()) return false;
+        }
+        return true;
+    }
+
+    private static final class Entry {
+        private final String url;
+        private final ScrapedData data;
+        // Set on flush markers
+        private final CountDownLatch flushed;
+
+        private Entry(String url, ScrapedData data, CountDownLatch flushed) {
+            this.url = url;
+            this.data = data;
+            this.flushed = flushed;
+        }
+    }
+}
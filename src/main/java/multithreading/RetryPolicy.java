@@ -0,0 +1,95 @@
+package multithreading;
+
+import org.jsoup.HttpStatusException;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Decides whether a failed fetch is retried and how long to wait first: exponential backoff with full jitter,
+// so retries against a struggling host spread out instead of arriving together
+class RetryPolicy {
+    enum ErrorKind {
+        TIMEOUT(true, true),
+        NETWORK(true, true),
+        // 429, the host is asking us to slow down
+        THROTTLED(true, true),
+        SERVER_ERROR(true, true),
+        // Host's breaker is open, the attempt was never made
+        CIRCUIT_OPEN(true, false),
+        // 4xx: the page itself is the problem, asking again won't change the answer
+        CLIENT_ERROR(false, false),
+        UNKNOWN_HOST(false, true),
+        OTHER(false, false);
+
+        private final boolean retryable;
+        private final boolean hostFailure;
+
+        ErrorKind(boolean retryable, boolean hostFailure) {
+            this.retryable = retryable;
+            this.hostFailure = hostFailure;
+        }
+
+        public boolean isRetryable() {
+            return retryable;
+        }
+
+        // Whether the error says something about the host's health, and so counts towards its circuit breaker
+        public boolean isHostFailure() {
+            return hostFailure;
+        }
+    }
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        if (maxAttempts <= 0) throw new IllegalArgumentException("Max attempts must be positive");
+        if (baseDelayMillis <= 0 || maxDelayMillis < baseDelayMillis) throw new IllegalArgumentException("Invalid backoff delays");
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    boolean shouldRetry(ErrorKind kind, int attempt) {
+        return kind.isRetryable() && attempt < maxAttempts;
+    }
+
+    int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    // Delay before the attempt following `attempt` (1-based), uniformly random up to the exponential cap
+    long backoffMillis(int attempt) {
+        long cap = baseDelayMillis << Math.min(attempt - 1, 30);
+        if (cap <= 0 || cap > maxDelayMillis) cap = maxDelayMillis;
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    static ErrorKind classify(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof CircuitBreaker.OpenException) return ErrorKind.CIRCUIT_OPEN;
+        if (cause instanceof SocketTimeoutException || cause instanceof HttpTimeoutException) return ErrorKind.TIMEOUT;
+        if (cause instanceof UnknownHostException) return ErrorKind.UNKNOWN_HOST;
+        if (cause instanceof HttpStatusException) {
+            int status = ((HttpStatusException) cause).getStatusCode();
+            if (status == 429) return ErrorKind.THROTTLED;
+            if (status >= 500) return ErrorKind.SERVER_ERROR;
+            return ErrorKind.CLIENT_ERROR;
+        }
+        if (cause instanceof IOException) return ErrorKind.NETWORK;
+        return ErrorKind.OTHER;
+    }
+}
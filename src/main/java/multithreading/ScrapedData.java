@@ -0,0 +1,61 @@
+package multithreading;
+
+import java.util.List;
+
+class ScrapedData{
+    private String title;
+    // Ids into linkTable rather than the hrefs themselves, pages share the strings
+    private int[] linkIds;
+    private LinkTable linkTable;
+    // SimHash of the page text, 0 when unknown
+    private long fingerprint;
+    // Set when the page is a near duplicate of one scraped earlier
+    private String duplicateOf;
+
+    public ScrapedData(String title, int[] linkIds, LinkTable linkTable, long fingerprint) {
+        this.title = title;
+        this.linkIds = linkIds;
+        this.linkTable = linkTable;
+        this.fingerprint = fingerprint;
+    }
+
+    public ScrapedData(String title, int[] linkIds, LinkTable linkTable) {
+        this(title, linkIds, linkTable, 0);
+    }
+
+    public ScrapedData(String title, List<String> links, LinkTable linkTable, long fingerprint) {
+        this(title, linkTable.internAll(links), linkTable, fingerprint);
+    }
+
+    public ScrapedData(String title, List<String> links, LinkTable linkTable) {
+        this(title, links, linkTable, 0);
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public List<String> getLinks() {
+        return linkTable.resolveAll(linkIds);
+    }
+
+    public int[] getLinkIds() {
+        return linkIds;
+    }
+
+    public LinkTable getLinkTable() {
+        return linkTable;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public String getDuplicateOf() {
+        return duplicateOf;
+    }
+
+    public void setDuplicateOf(String duplicateOf) {
+        this.duplicateOf = duplicateOf;
+    }
+}
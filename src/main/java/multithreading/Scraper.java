@@ -3,137 +3,505 @@ package multithreading;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-class ScrapedData{
-    private String title;
-    private List<String> links;
+public class Scraper {
+    private static final Logger logger = LogManager.getLogger();
+    private static final int CIRCUIT_FAILURE_THRESHOLD = 5;
+    private static final long CIRCUIT_OPEN_MILLIS = 30_000;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    // Pages whose text fingerprints differ in at most this many of 64 bits count as near duplicates
+    private static final int NEAR_DUPLICATE_DISTANCE = 3;
+
+    // Executor Service for managing threads dynamically
+    private final ExecutorService executor;
+    // CPU-bound HTML parsing runs here, sized to the cores, independently of how many fetches are in flight
+    private final ExecutorService parseExecutor;
+    private final PageFetcher fetcher;
+    // Caps the number of pages in flight (fetching, parsing or being written), whichever executor runs them
+    private final Semaphore fetchPermits;
+    // Rate limits each host before its tasks reach the executor
+    private final HostScheduler scheduler;
+    // Optional; when set, pages are revalidated with conditional GETs instead of refetched
+    private volatile DiskResponseCache responseCache;
+    // Optional; when set, crawls fetch only the URLs it owns and exchange the other links through it
+    private volatile LinkRouter linkRouter;
+    // Optional; when set, the next crawl records its progress there and resumes from what it holds
+    private volatile CrawlCheckpoint checkpoint;
+    private volatile PageExtractor extractor = ExtractionMode.DOM.create();
+    private volatile RetryPolicy retryPolicy = new RetryPolicy(3, 500, 30_000); //retry 3 timex max
+    private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    // Hosts whose DNS lookup has been timed
+    private final Set<String> resolvedHosts = ConcurrentHashMap.newKeySet();
+    private final ScraperMetrics metrics = new ScraperMetrics();
+    // Null for no deadline
+    private volatile Duration crawlDeadline;
+    private volatile int failureBudget = Integer.MAX_VALUE;
+    private final Set<CrawlScope> activeCrawls = ConcurrentHashMap.newKeySet();
+    private volatile DuplicateHandling duplicateHandling = DuplicateHandling.OFF;
 
-    public ScrapedData(String title, List<String> links) {
-        this.title = title;
-        this.links = links;
+    public Scraper(ExecutionMode mode, int maxConcurrentFetches, double requestsPerSecondPerHost, FetchBackend backend) {
+        if (maxConcurrentFetches <= 0) throw new IllegalArgumentException("Max concurrent fetches must be positive");
+        this.executor = createExecutor(mode);
+        this.parseExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.fetcher = backend.create();
+        this.fetchPermits = new Semaphore(maxConcurrentFetches);
+        this.scheduler = new HostScheduler(executor, requestsPerSecondPerHost, 2);
+        metrics.setQueueGauges(scheduler::queuedTasks,
+                () -> executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : 0,
+                fetchPermits::getQueueLength);
+        metrics.registerMBean();
     }
 
-    public String getTitle() {
-        return title;
+    public Scraper(ExecutionMode mode, int maxConcurrentFetches, double requestsPerSecondPerHost) {
+        this(mode, maxConcurrentFetches, requestsPerSecondPerHost, FetchBackend.JSOUP);
     }
 
-    public List<String> getLinks() {
-        return links;
+    public Scraper(ExecutionMode mode, int maxConcurrentFetches) {
+        this(mode, maxConcurrentFetches, HostScheduler.UNLIMITED);
     }
-}
 
-public class Scraper {
-    // Executor Service for managing threads dynamically
-    private static final Logger logger = LogManager.getLogger();
+    static ExecutorService createExecutor(ExecutionMode mode) {
+        switch (mode) {
+            case VIRTUAL_THREADS:
+                return Executors.newVirtualThreadPerTaskExecutor();
+            default:
+                return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
 
-    private static final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    public void setResponseCache(DiskResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
 
-    private static void scrapePageWithRetry(String url, ConcurrentMap<String, ScrapedData> results, int numberOfRetries){
-        while (numberOfRetries>0){
-            try {
-                logger.debug("Attempting to scrape URL: " + url);
-                Document doc = Jsoup.connect(url).get();
+    // Used by the next crawl only, which closes it when it ends
+    void setCheckpoint(CrawlCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
 
-                String title = doc.title();
-                Elements links = doc.select("a[href]");
-                List<String> linksList = links.eachAttr("href");
+    void setLinkRouter(LinkRouter linkRouter) {
+        this.linkRouter = linkRouter;
+    }
 
-                results.put(url, new ScrapedData(title,linksList));
-                return;
+    public void setExtractionMode(ExtractionMode mode) {
+        this.extractor = mode.create();
+    }
 
-            }catch (IOException e){
-                numberOfRetries--;
-                logger.error("Retrying " + url + " (" + numberOfRetries + " retries left)");
-            }
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public void setDuplicateHandling(DuplicateHandling duplicateHandling) {
+        this.duplicateHandling = duplicateHandling;
+    }
+
+    public void setCrawlDeadline(Duration crawlDeadline) {
+        this.crawlDeadline = crawlDeadline;
+    }
+
+    // Number of pages allowed to fail after their retries before a crawl is ended
+    public void setFailureBudget(int failureBudget) {
+        if (failureBudget < 0) throw new IllegalArgumentException("Failure budget must not be negative");
+        this.failureBudget = failureBudget;
+    }
+
+    ScraperMetrics getMetrics() {
+        return metrics;
+    }
+
+    private CircuitBreaker circuitBreakerFor(String host) {
+        return circuitBreakers.computeIfAbsent(host, h -> new CircuitBreaker(CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_MILLIS));
+    }
+
+    // A single attempt: conditional fetch if cached, then parse on the parsing pool. The text fingerprint is only
+    // computed when the crawl compares pages for near duplicates
+    private CompletableFuture<ScrapedData> scrapePage(String url, CrawlScope scope, LinkTable links, boolean fingerprint) {
+        logger.debug("Attempting to scrape URL: " + url);
+        DiskResponseCache cache = responseCache;
+        DiskResponseCache.CachedResponse cached = cache == null ? null : cache.lookup(url, links);
+
+        resolveHost(url);
+        long fetchStart = System.nanoTime();
+        return scope.track(fetcher.fetch(url, cached == null ? Map.of() : cached.validators()))
+                .thenCompose(page -> {
+                    metrics.record(ScraperMetrics.Phase.FETCH, System.nanoTime() - fetchStart);
+                    metrics.downloaded(page.getBody().length);
+                    if (page.isNotModified() && cached != null) {
+                        logger.debug("Not modified, reusing cached copy of " + url);
+                        return CompletableFuture.completedFuture(cached.getData());
+                    }
+                    return CompletableFuture.supplyAsync(() -> {
+                        long parseStart = System.nanoTime();
+                        ScrapedData data = extractor.extract(page, links, fingerprint);
+                        metrics.record(ScraperMetrics.Phase.PARSE, System.nanoTime() - parseStart);
+                        if (cache != null) cache.store(page, data);
+                        return data;
+                    }, parseExecutor);
+                });
+    }
+
+    // Neither fetcher reports its DNS time, so a host is looked up here before its first fetch, which then hits the
+    // JVM's address cache. Later fetches aren't timed, the lookup would only repeat what the cache answers. A lookup
+    // failure is left for the fetch to report
+    private void resolveHost(String url) {
+        String host = HostScheduler.hostOf(url);
+        if (host.isEmpty() || !resolvedHosts.add(host)) return;
+        long start = System.nanoTime();
+        try {
+            InetAddress.getAllByName(host);
+        } catch (UnknownHostException e) {
+            logger.debug("Could not resolve " + host + " : " + e.getMessage());
         }
+        metrics.record(ScraperMetrics.Phase.DNS, System.nanoTime() - start);
     }
 
-    public static void main(String[] args) {
-        List<String> urlsToScrape = List.of(
-                "https://en.wikipedia.org/wiki/World_War_II",
-                "https://en.wikipedia.org/wiki/Industrial_Revolution",
-                "https://en.wikipedia.org/wiki/French_Revolution",
-                "https://en.wikipedia.org/wiki/Mughal_Empire",
-                "https://en.wikipedia.org/wiki/Ancient_Egypt",
-                "https://en.wikipedia.org/wiki/Renaissance",
-                "https://en.wikipedia.org/wiki/American_Civil_War",
-                "https://en.wikipedia.org/wiki/Partition_of_India"
-        );
+    // Fetches just the given URLs, without following their links
+    public ConcurrentMap<String, ScrapedData> scrapeAll(List<String> urlsToScrape) {
+        if (urlsToScrape.isEmpty()) return new ConcurrentHashMap<>();
+        return crawl(urlsToScrape, 0, urlsToScrape.size());
+    }
 
+    public ConcurrentMap<String, ScrapedData> crawl(List<String> seeds, int maxDepth, int maxPages) {
         ConcurrentMap<String, ScrapedData> results = new ConcurrentHashMap<>();
+        crawl(seeds, maxDepth, maxPages, results::put);
+        return results;
+    }
+
+    // Fetches the seeds and follows their links up to maxDepth hops, stopping after maxPages pages. A URL's depth
+    // is counted along the path it was first discovered on. Each page is handed to the sink as soon as it is
+    // scraped. The crawl ends early, keeping what was scraped so far, at the crawl deadline, once more pages than
+    // the failure budget have failed, on cancel() or when the calling thread is interrupted
+    public CrawlResult crawl(List<String> seeds, int maxDepth, int maxPages, ResultSink sink) {
+        long start = System.currentTimeMillis();
+        CrawlCheckpoint checkpoint = this.checkpoint;
+        this.checkpoint = null;
+        LinkRouter router = linkRouter;
+        Crawl crawl = new Crawl(new CrawlFrontier(maxDepth, maxPages), sink, new CrawlScope(crawlDeadline, failureBudget), checkpoint, router,
+                duplicateHandling);
+        activeCrawls.add(crawl.scope);
+        CrawlScope.Outcome outcome;
+        try {
+            if (checkpoint != null) {
+                checkpoint.start(sink);
+                // Pages completed by an earlier run are only marked visited, the ones still pending are fetched again
+                crawl.frontier.restoreCompleted(checkpoint.completed(), checkpoint.resumedCompletedCount());
+                checkpoint.resumedPending().forEach((url, depth) -> crawl.schedule(crawl.frontier.restore(url, depth)));
+            }
+            if (router != null) router.open(crawl);
+            for (String seed : seeds) {
+                if (router != null && !router.owns(seed)) continue;
+                CrawlRequest request = crawl.frontier.offerSeed(seed);
+                if (request != null) crawl.submit(request);
+            }
+            outcome = crawl.scope.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcome = CrawlScope.Outcome.CANCELLED;
+        } finally {
+            activeCrawls.remove(crawl.scope);
+            if (checkpoint != null) closeCheckpoint(checkpoint);
+        }
 
-        List<Future<Void>> futures = new CopyOnWriteArrayList<>();
+        CrawlResult result = new CrawlResult(crawl.scraped.get(), crawl.scope.failedTasks(), crawl.scope.abandonedTasks(),
+                outcome, System.currentTimeMillis() - start);
+        if (!result.isComplete()) logger.warn("Crawl ended early, " + result);
+        return result;
+    }
 
-        for(String url : urlsToScrape){
-            Callable<Void> task = () -> {
-                scrapePageWithRetry(url, results, 3); //retry 3 timex max
-                return null;
-            };
+    private static void closeCheckpoint(CrawlCheckpoint checkpoint) {
+        try {
+            checkpoint.close();
+        } catch (IOException e) {
+            logger.error("Error writing the final checkpoint : " + e.getMessage());
+        }
+    }
 
-            Future<Void> future = executor.submit(task);
-            futures.add(future);
+    // Ends every crawl in progress, which return what they have scraped so far
+    public void cancel() {
+        for (CrawlScope scope : activeCrawls) {
+            scope.cancel();
         }
+    }
+
+    // State of a single crawl; the scope tracks its pages from submission until they are scraped or given up on.
+    // With a router the scope also holds one task for the open inbox
+    private final class Crawl implements LinkInbox {
+        private final CrawlFrontier frontier;
+        private final ResultSink sink;
+        private final CrawlScope scope;
+        // Null when the crawl isn't checkpointed
+        private final CrawlCheckpoint checkpoint;
+        // Null when the crawl isn't sharded
+        private final LinkRouter router;
+        private final AtomicBoolean inboxOpen = new AtomicBoolean();
+        private final AtomicInteger scraped = new AtomicInteger();
+        // The hrefs of this crawl's pages
+        private final LinkTable links = new LinkTable();
+        private final DuplicateHandling duplicateHandling;
+        // Fingerprints of the pages scraped so far, null when duplicates aren't looked for
+        private final SimHashIndex nearDuplicates;
 
-        for(Future<Void> future : futures){
+        private Crawl(CrawlFrontier frontier, ResultSink sink, CrawlScope scope, CrawlCheckpoint checkpoint, LinkRouter router,
+                      DuplicateHandling duplicateHandling) {
+            this.frontier = frontier;
+            this.sink = sink;
+            this.scope = scope;
+            this.checkpoint = checkpoint;
+            this.router = router;
+            this.duplicateHandling = duplicateHandling;
+            this.nearDuplicates = duplicateHandling == DuplicateHandling.OFF ? null : new SimHashIndex(NEAR_DUPLICATE_DISTANCE);
+            if (router != null) {
+                inboxOpen.set(true);
+                scope.fork();
+            }
+        }
+
+        @Override
+        public void receive(String url, int depth) {
+            if (scope.isEnded()) return;
+            CrawlRequest request = frontier.offer(url, depth);
+            if (request != null) submit(request);
+        }
+
+        @Override
+        public boolean isIdle() {
+            // Only the inbox's own task left; before join is called the scope holds one more
+            return scope.pendingTasks() == 1;
+        }
+
+        @Override
+        public void close() {
+            if (inboxOpen.compareAndSet(true, false)) scope.finished();
+        }
+
+        private void submit(CrawlRequest request) {
+            if (checkpoint != null) checkpoint.admitted(request);
+            schedule(request);
+        }
+
+        private void schedule(CrawlRequest request) {
+            scope.fork();
+            long queuedAt = System.nanoTime();
+            scheduler.submit(request.getUrl(), () -> scrapePageWithRetry(request, 1, queuedAt));
+        }
+
+        // Runs on a worker; a failed attempt is rescheduled through the host scheduler after a backoff,
+        // so waiting for a retry never holds a worker or a fetch permit
+        private void scrapePageWithRetry(CrawlRequest request, int attempt, long queuedAt) {
+            long startedAt = System.nanoTime();
+            metrics.record(ScraperMetrics.Phase.QUEUE_WAIT, startedAt - queuedAt);
+            if (!scope.enter()) {
+                // The crawl ended while this was queued
+                scope.finished();
+                return;
+            }
+
+            String host = HostScheduler.hostOf(request.getUrl());
+            CircuitBreaker breaker = circuitBreakerFor(host);
+            CompletableFuture<ScrapedData> page;
             try {
-                future.get();
-            }catch (InterruptedException | ExecutionException e){
-                logger.error("Error in executing task : " + e.getMessage());
+                if (!breaker.allowRequest()) {
+                    // Counts as an attempt, so pages of a host that stays down run out of retries and fail instead of
+                    // waiting for it indefinitely; the retry is due once the open period ends
+                    failed(request, attempt, new CircuitBreaker.OpenException(host), breaker);
+                    scope.exit();
+                    return;
+                }
+                fetchPermits.acquire();
+                metrics.record(ScraperMetrics.Phase.SLOT_WAIT, System.nanoTime() - startedAt);
+                page = scrapePage(request.getUrl(), scope, links, nearDuplicates != null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                breaker.recordNeutral();
+                scope.finished();
+                scope.exit();
+                return;
+            } finally {
+                scope.detach();
             }
+
+            page.whenComplete((data, error) -> {
+                try {
+                    if (scope.isEnded()) {
+                        // Cancelled, or finished too late to count
+                        breaker.recordNeutral();
+                        scope.finished();
+                        return;
+                    }
+                    if (error != null) {
+                        RetryPolicy.ErrorKind kind = RetryPolicy.classify(error);
+                        if (kind.isHostFailure()) breaker.recordFailure();
+                        else breaker.recordNeutral();
+                        failed(request, attempt, error, breaker);
+                        return;
+                    }
+                    breaker.recordSuccess();
+
+                    String original = nearDuplicates == null || data.getFingerprint() == 0 ? null
+                            : nearDuplicates.findOrAdd(data.getFingerprint(), request.getUrl());
+                    if (original != null) {
+                        metrics.nearDuplicate();
+                        data.setDuplicateOf(original);
+                        logger.debug(request.getUrl() + " is a near duplicate of " + original);
+                    }
+                    if (original == null || duplicateHandling == DuplicateHandling.FLAG) {
+                        sink.accept(request.getUrl(), data);
+                        metrics.record(ScraperMetrics.Phase.PAGE, System.nanoTime() - startedAt);
+                        metrics.pageScraped();
+                        scraped.incrementAndGet();
+                    }
+                    // A duplicate's links are the original's, which are already queued
+                    for (String href : original == null ? data.getLinks() : List.<String>of()) {
+                        if (router == null) {
+                            CrawlRequest next = frontier.offerLink(request, href);
+                            if (next != null) submit(next);
+                            continue;
+                        }
+                        String url = frontier.resolveLink(request, href);
+                        if (url == null) continue;
+                        if (router.owns(url)) {
+                            CrawlRequest next = frontier.offer(url, request.getDepth() + 1);
+                            if (next != null) submit(next);
+                        } else {
+                            router.forward(url, request.getDepth() + 1);
+                        }
+                    }
+                    // After the links, so a resumed crawl never has a completed page whose links were lost
+                    if (checkpoint != null) checkpoint.completed(request.getUrl());
+                    scope.finished();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    scope.finished();
+                } catch (RuntimeException e) {
+                    logger.error("Error in executing task : " + e.getMessage());
+                    scope.finished();
+                } finally {
+                    fetchPermits.release();
+                    scope.exit();
+                }
+            });
         }
 
+        private void failed(CrawlRequest request, int attempt, Throwable error, CircuitBreaker breaker) {
+            RetryPolicy policy = retryPolicy;
+            RetryPolicy.ErrorKind kind = RetryPolicy.classify(error);
+            String message = RetryPolicy.unwrap(error).getMessage();
+
+            if (!policy.shouldRetry(kind, attempt)) {
+                logger.error("Failed to scrape " + request.getUrl() + " after " + attempt + " attempt(s), " + kind + " : " + message);
+                metrics.failed(HostScheduler.hostOf(request.getUrl()));
+                scope.failed();
+                scope.finished();
+                return;
+            }
+
+            long delayMillis = Math.max(policy.backoffMillis(attempt), breaker.remainingOpenMillis());
+            logger.error("Retrying " + request.getUrl() + " in " + delayMillis + " ms after " + kind + " : " + message
+                    + " (" + (policy.getMaxAttempts() - attempt) + " retries left)");
+            metrics.retried(HostScheduler.hostOf(request.getUrl()));
+            long dueAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+            scheduler.submitLater(request.getUrl(), () -> scrapePageWithRetry(request, attempt + 1, dueAt), delayMillis);
+        }
+    }
+
+    public void shutdown() {
+        cancel();
+        scheduler.shutdown();
+        fetcher.close();
+        parseExecutor.shutdown();
         executor.shutdown();
         try {
-            long startTime = System.currentTimeMillis();
-            long timeout = 5*60*1000; //5 mins in millisecs;
-            boolean isTerminated = false;
-
-            while (!isTerminated){
-                isTerminated = executor.isTerminated();
-                if(!isTerminated){
-                    long timeElapsed = System.currentTimeMillis() - startTime;
-                    if(timeElapsed>timeout){
-                        logger.warn("Timeout reached not all tasks completed");
-                        break;
-                    }
-                    Thread.sleep(1000);
-                }
+            // Crawls only return once their attempts have stopped, so anything left is a queued no-op
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("Timeout reached not all tasks completed");
             }
         }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
             logger.error("Executor Termination Interrupted : "+e.getMessage());
         }finally {
             executor.shutdownNow();
+            parseExecutor.shutdownNow();
+            logger.info(metrics.getSummary());
+            metrics.unregisterMBean();
         }
+    }
 
-        //Display results
+    // With indexed set, title terms and backlinks are indexed as results are written and ResultIndex answers queries
+    // on them. The index is opened first: it reads segments written since its last save, and the format starts a new
+    // one that holds nothing yet. It is opt-in since the whole index is held in memory for the crawl
+    private static ResultWriter openResultWriter(boolean textOutput, boolean indexed) throws IOException {
+        Path resultDirectory = textOutput ? Path.of("logs") : Path.of("logs", "segments");
+        ResultIndex index = indexed ? ResultIndex.open(resultDirectory) : null;
+        ResultFormat format = textOutput
+                ? new TextResultFormat("logs/results.txt")
+                : new SegmentResultFormat(resultDirectory, SegmentFormat.Compression.DEFLATE, 64L * 1024 * 1024);
+        if (index != null) format = new IndexingResultFormat(format, index, resultDirectory.resolve(ResultIndex.FILE_NAME));
+        return new ResultWriter(format, 1024, 64);
+    }
 
-        try(BufferedWriter writer = new BufferedWriter(new FileWriter("logs/results.txt",true))){
-            results.forEach((url,data)->{
-                try {
-                    writer.write("URL : "+url);
-                    writer.newLine();
-                    writer.write("Title: "+data.getTitle());
-                    writer.newLine();
-                    writer.write("Links : "+data.getLinks());
-                    writer.newLine();
-                    writer.write("-------------------------");
-                    writer.newLine();
-                }catch (IOException e) {
-                    logger.error("Error writing to file: " + e.getMessage());
-                }
-            });
-        }catch (IOException e){
+    public static void main(String[] args) {
+        // Usage: Scraper [FIXED_POOL|VIRTUAL_THREADS] [maxConcurrentFetches] [maxDepth, 0 scrapes just the seeds]
+        //                [maxPages, the number of seeds by default] [requestsPerSecondPerHost]
+        //                [JSOUP|HTTP_CLIENT] [cacheMegabytes, 0 disables the response cache] [BINARY|TEXT] [DOM|STREAMING]
+        //                [deadlineSeconds, 0 for none] [failureBudget]
+        //                [FRESH|RESUME, RESUME records the crawl in logs/checkpoint and continues the one found there]
+        //                [OFF|FLAG|SKIP near duplicate pages] [NOINDEX|INDEX, keeps a ResultIndex next to the results]
+        ExecutionMode mode = args.length > 0 ? ExecutionMode.valueOf(args[0].toUpperCase()) : ExecutionMode.FIXED_POOL;
+        int maxConcurrentFetches = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int maxDepth = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        double requestsPerSecondPerHost = args.length > 4 ? Double.parseDouble(args[4]) : 5.0;
+        FetchBackend backend = args.length > 5 ? FetchBackend.valueOf(args[5].toUpperCase()) : FetchBackend.JSOUP;
+        long cacheMegabytes = args.length > 6 ? Long.parseLong(args[6]) : 256;
+        // Binary segments go to logs/segments, SegmentReader exports them to the text format on demand
+        boolean textOutput = args.length > 7 && args[7].equalsIgnoreCase("TEXT");
+        ExtractionMode extraction = args.length > 8 ? ExtractionMode.valueOf(args[8].toUpperCase()) : ExtractionMode.DOM;
+        long deadlineSeconds = args.length > 9 ? Long.parseLong(args[9]) : 0;
+        int failureBudget = args.length > 10 ? Integer.parseInt(args[10]) : Integer.MAX_VALUE;
+        boolean resume = args.length > 11 && args[11].equalsIgnoreCase("RESUME");
+        DuplicateHandling duplicates = args.length > 12 ? DuplicateHandling.valueOf(args[12].toUpperCase()) : DuplicateHandling.OFF;
+        boolean indexed = args.length > 13 && args[13].equalsIgnoreCase("INDEX");
+
+        List<String> urlsToScrape = List.of(
+                "https://en.wikipedia.org/wiki/World_War_II",
+                "https://en.wikipedia.org/wiki/Industrial_Revolution",
+                "https://en.wikipedia.org/wiki/French_Revolution",
+                "https://en.wikipedia.org/wiki/Mughal_Empire",
+                "https://en.wikipedia.org/wiki/Ancient_Egypt",
+                "https://en.wikipedia.org/wiki/Renaissance",
+                "https://en.wikipedia.org/wiki/American_Civil_War",
+                "https://en.wikipedia.org/wiki/Partition_of_India"
+        );
+        // Links are only followed when asked for, by default the seeds are scraped and nothing else
+        int maxPages = args.length > 3 ? Integer.parseInt(args[3]) : urlsToScrape.size();
+
+        Scraper scraper = new Scraper(mode, maxConcurrentFetches, requestsPerSecondPerHost, backend);
+        scraper.setExtractionMode(extraction);
+        if (deadlineSeconds > 0) scraper.setCrawlDeadline(Duration.ofSeconds(deadlineSeconds));
+        scraper.setFailureBudget(failureBudget);
+        scraper.setDuplicateHandling(duplicates);
+        try (ResultWriter writer = openResultWriter(textOutput, indexed)) {
+            if (cacheMegabytes > 0) {
+                scraper.setResponseCache(new DiskResponseCache(Path.of("logs", "cache"), cacheMegabytes * 1024 * 1024));
+            }
+            // Opt-in, since its pending set grows with the frontier
+            if (resume) scraper.setCheckpoint(new CrawlCheckpoint(Path.of("logs", "checkpoint"), resume, maxPages));
+            CrawlResult result = scraper.crawl(urlsToScrape, maxDepth, maxPages, writer);
+            logger.info("Scraped " + result.getScraped() + " pages (" + result.getOutcome() + ")");
+        } catch (IOException e) {
             logger.error("Error opening/closing the file: " + e.getMessage());
+        } finally {
+            scraper.shutdown();
         }
-
     }
 }
@@ -0,0 +1,40 @@
+package multithreading;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+
+// Compares executors and fetch backends on a few thousand URLs served locally
+public class ScraperBenchmark {
+    private static final Logger logger = LogManager.getLogger();
+
+    public static void main(String[] args) throws Exception {
+        int urlCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int latencyMillis = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int maxConcurrentFetches = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+
+        try (SyntheticWeb web = new SyntheticWeb(latencyMillis)) {
+            List<String> urls = web.urls(urlCount);
+
+            for (FetchBackend backend : FetchBackend.values()) {
+                for (ExecutionMode mode : ExecutionMode.values()) {
+                    run(urls, mode, backend, maxConcurrentFetches);
+                }
+            }
+        }
+    }
+
+    private static void run(List<String> urls, ExecutionMode mode, FetchBackend backend, int maxConcurrentFetches) {
+        Scraper scraper = new Scraper(mode, maxConcurrentFetches, HostScheduler.UNLIMITED, backend);
+        long start = System.nanoTime();
+        Map<String, ScrapedData> results = scraper.scrapeAll(urls);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        scraper.shutdown();
+
+        double pagesPerSecond = results.size() * 1000.0 / Math.max(1, elapsedMillis);
+        logger.info(String.format("%s/%s: %d/%d pages in %d ms (%.1f pages/sec)",
+                mode, backend, results.size(), urls.size(), elapsedMillis, pagesPerSecond));
+    }
+}
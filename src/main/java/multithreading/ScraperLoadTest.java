@@ -0,0 +1,79 @@
+package multithreading;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+
+// Crawls a SyntheticWeb and reports throughput and latency percentiles, for measuring executor and fetch path
+// changes without the network. Exits with status 1 if the crawl didn't reach every page, so it can gate a CI run.
+// Usage: ScraperLoadTest [pages=2000] [latencyMillis=50] [fanOut=10] [pageKilobytes=20] [errorRate=0.01]
+//                        [maxConcurrentFetches=256] [FIXED_POOL|VIRTUAL_THREADS] [JSOUP|HTTP_CLIENT] [DOM|STREAMING]
+public class ScraperLoadTest {
+    private static final Logger logger = LogManager.getLogger();
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    public static void main(String[] args) throws Exception {
+        int pages = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int latencyMillis = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int fanOut = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int pageKilobytes = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        double errorRate = args.length > 4 ? Double.parseDouble(args[4]) : 0.01;
+        int maxConcurrentFetches = args.length > 5 ? Integer.parseInt(args[5]) : 256;
+        ExecutionMode mode = args.length > 6 ? ExecutionMode.valueOf(args[6].toUpperCase()) : ExecutionMode.VIRTUAL_THREADS;
+        FetchBackend backend = args.length > 7 ? FetchBackend.valueOf(args[7].toUpperCase()) : FetchBackend.HTTP_CLIENT;
+        ExtractionMode extraction = args.length > 8 ? ExtractionMode.valueOf(args[8].toUpperCase()) : ExtractionMode.DOM;
+        if (fanOut <= 0 && pages > 1) throw new IllegalArgumentException("A fan-out of 0 only reaches a single page");
+
+        logger.info(String.format("Load test: %d pages, %d ms latency, fan-out %d, %d KB pages, %.1f%% errors, %d fetches, %s/%s/%s",
+                pages, latencyMillis, fanOut, pageKilobytes, errorRate * 100, maxConcurrentFetches, mode, backend, extraction));
+
+        boolean complete;
+        try (SyntheticWeb web = new SyntheticWeb(latencyMillis, fanOut, pageKilobytes * 1024, errorRate)) {
+            Scraper scraper = new Scraper(mode, maxConcurrentFetches, HostScheduler.UNLIMITED, backend);
+            scraper.setExtractionMode(extraction);
+            // Every synthetic error succeeds on its retry, so short backoffs keep them from dominating the run
+            scraper.setRetryPolicy(new RetryPolicy(3, 10, 200));
+
+            int scraped;
+            long elapsedNanos;
+            try {
+                long start = System.nanoTime();
+                scraped = scraper.crawl(List.of(web.urlFor(0)), Integer.MAX_VALUE, pages, (url, data) -> { }).getScraped();
+                elapsedNanos = System.nanoTime() - start;
+            } finally {
+                scraper.shutdown();
+            }
+
+            ScraperMetrics metrics = scraper.getMetrics();
+            double seconds = elapsedNanos / 1e9;
+            logger.info(String.format("Scraped %d/%d pages in %.2f s: %.1f pages/sec, %.1f MB/sec; %d requests served, %d errors, %d retries, %d failed",
+                    scraped, pages, seconds, scraped / seconds, metrics.getBytesDownloaded() / seconds / (1024 * 1024),
+                    web.requestCount(), web.errorCount(), metrics.getRetries(), metrics.getPagesFailed()));
+            logger.info(percentileTable(metrics));
+            complete = scraped == pages;
+        }
+
+        if (!complete) {
+            logger.error("Crawl did not reach every page");
+            System.exit(1);
+        }
+    }
+
+    private static String percentileTable(ScraperMetrics metrics) {
+        StringBuilder table = new StringBuilder(String.format("%-11s %8s", "phase (ms)", "mean"));
+        for (double percentile : PERCENTILES) {
+            table.append(String.format(" %8s", "p" + (percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile))));
+        }
+        table.append(String.format(" %8s", "max"));
+        for (ScraperMetrics.Phase phase : ScraperMetrics.Phase.values()) {
+            LatencyHistogram histogram = metrics.latency(phase);
+            table.append(System.lineSeparator()).append(String.format("%-11s %8.1f", phase, histogram.meanMillis()));
+            for (double percentile : PERCENTILES) {
+                table.append(String.format(" %8.1f", histogram.percentileMillis(percentile)));
+            }
+            table.append(String.format(" %8.1f", histogram.maxMillis()));
+        }
+        return table.toString();
+    }
+}
@@ -0,0 +1,220 @@
+package multithreading;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+// Counters and per-phase latency histograms for the scrape pipeline, readable over JMX while the crawl runs
+class ScraperMetrics implements ScraperMetricsMXBean {
+    private static final Logger logger = LogManager.getLogger();
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    enum Phase {
+        // Submitted (or due, for a retry) until a worker picks it up: host rate limiting and executor queueing
+        QUEUE_WAIT,
+        // Worker waiting for a fetch permit
+        SLOT_WAIT,
+        DNS,
+        // Connect, request and body transfer
+        FETCH,
+        PARSE,
+        // Worker pickup until the result is handed to the sink
+        PAGE
+    }
+
+    private final Map<Phase, LatencyHistogram> latencies = new EnumMap<>(Phase.class);
+    private final LongAdder pagesScraped = new LongAdder();
+    private final LongAdder pagesFailed = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder nearDuplicates = new LongAdder();
+    private final LongAdder bytesDownloaded = new LongAdder();
+    private final ConcurrentMap<String, LongAdder> retriesByHost = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> failuresByHost = new ConcurrentHashMap<>();
+    private final long startNanos = System.nanoTime();
+
+    private volatile IntSupplier schedulerQueueDepth = () -> 0;
+    private volatile IntSupplier executorQueueDepth = () -> 0;
+    private volatile IntSupplier fetchSlotWaiters = () -> 0;
+    private ObjectName objectName;
+
+    ScraperMetrics() {
+        for (Phase phase : Phase.values()) {
+            latencies.put(phase, new LatencyHistogram());
+        }
+    }
+
+    void record(Phase phase, long nanos) {
+        latencies.get(phase).record(nanos);
+    }
+
+    LatencyHistogram latency(Phase phase) {
+        return latencies.get(phase);
+    }
+
+    void downloaded(int bytes) {
+        bytesDownloaded.add(bytes);
+    }
+
+    void pageScraped() {
+        pagesScraped.increment();
+    }
+
+    void nearDuplicate() {
+        nearDuplicates.increment();
+    }
+
+    void retried(String host) {
+        retries.increment();
+        retriesByHost.computeIfAbsent(host, h -> new LongAdder()).increment();
+    }
+
+    void failed(String host) {
+        pagesFailed.increment();
+        failuresByHost.computeIfAbsent(host, h -> new LongAdder()).increment();
+    }
+
+    void setQueueGauges(IntSupplier schedulerQueueDepth, IntSupplier executorQueueDepth, IntSupplier fetchSlotWaiters) {
+        this.schedulerQueueDepth = schedulerQueueDepth;
+        this.executorQueueDepth = executorQueueDepth;
+        this.fetchSlotWaiters = fetchSlotWaiters;
+    }
+
+    void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName("multithreading:type=ScraperMetrics,name=scraper-" + instances.incrementAndGet());
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            logger.warn("Could not register scraper metrics with JMX: " + e.getMessage());
+        }
+    }
+
+    void unregisterMBean() {
+        if (objectName == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.warn("Could not unregister scraper metrics: " + e.getMessage());
+        }
+        objectName = null;
+    }
+
+    @Override
+    public long getPagesScraped() {
+        return pagesScraped.sum();
+    }
+
+    @Override
+    public long getPagesFailed() {
+        return pagesFailed.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getNearDuplicates() {
+        return nearDuplicates.sum();
+    }
+
+    @Override
+    public long getBytesDownloaded() {
+        return bytesDownloaded.sum();
+    }
+
+    @Override
+    public double getPagesPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds <= 0 ? 0 : pagesScraped.sum() / seconds;
+    }
+
+    @Override
+    public int getSchedulerQueueDepth() {
+        return schedulerQueueDepth.getAsInt();
+    }
+
+    @Override
+    public int getExecutorQueueDepth() {
+        return executorQueueDepth.getAsInt();
+    }
+
+    @Override
+    public int getFetchSlotWaiters() {
+        return fetchSlotWaiters.getAsInt();
+    }
+
+    @Override
+    public Map<String, Double> getP50Millis() {
+        return percentiles(50);
+    }
+
+    @Override
+    public Map<String, Double> getP99Millis() {
+        return percentiles(99);
+    }
+
+    @Override
+    public Map<String, Double> getMaxMillis() {
+        Map<String, Double> result = new TreeMap<>();
+        latencies.forEach((phase, histogram) -> result.put(phase.name(), histogram.maxMillis()));
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getRetriesByHost() {
+        return sums(retriesByHost);
+    }
+
+    @Override
+    public Map<String, Long> getFailuresByHost() {
+        return sums(failuresByHost);
+    }
+
+    private Map<String, Double> percentiles(double percentile) {
+        Map<String, Double> result = new TreeMap<>();
+        latencies.forEach((phase, histogram) -> result.put(phase.name(), histogram.percentileMillis(percentile)));
+        return result;
+    }
+
+    private static Map<String, Long> sums(Map<String, LongAdder> counters) {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((host, counter) -> result.put(host, counter.sum()));
+        return result;
+    }
+
+    @Override
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Scraped %d pages (%d failed, %d retries, %d near duplicates), %.1f MB downloaded, %.1f pages/sec%n",
+                getPagesScraped(), getPagesFailed(), getRetries(), getNearDuplicates(), getBytesDownloaded() / (1024.0 * 1024), getPagesPerSecond()));
+        summary.append(String.format("%-11s %9s %9s %9s %9s %9s%n", "phase", "count", "mean ms", "p50 ms", "p99 ms", "max ms"));
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = latencies.get(phase);
+            summary.append(String.format("%-11s %9d %9.1f %9.1f %9.1f %9.1f%n", phase, histogram.count(), histogram.meanMillis(),
+                    histogram.percentileMillis(50), histogram.percentileMillis(99), histogram.maxMillis()));
+        }
+        Map<String, Long> failures = getFailuresByHost();
+        getRetriesByHost().forEach((host, count) -> summary.append("  ").append(host).append(": ").append(count)
+                .append(" retries, ").append(failures.getOrDefault(host, 0L)).append(" failures").append(System.lineSeparator()));
+        failures.forEach((host, count) -> {
+            if (!retriesByHost.containsKey(host)) {
+                summary.append("  ").append(host).append(": 0 retries, ").append(count).append(" failures").append(System.lineSeparator());
+            }
+        });
+        return summary.toString().trim();
+    }
+}
@@ -0,0 +1,36 @@
+package multithreading;
+
+import java.util.Map;
+
+// JMX view of ScraperMetrics; latency maps are keyed by phase name
+public interface ScraperMetricsMXBean {
+    long getPagesScraped();
+
+    long getPagesFailed();
+
+    long getRetries();
+
+    long getNearDuplicates();
+
+    long getBytesDownloaded();
+
+    double getPagesPerSecond();
+
+    int getSchedulerQueueDepth();
+
+    int getExecutorQueueDepth();
+
+    int getFetchSlotWaiters();
+
+    Map<String, Double> getP50Millis();
+
+    Map<String, Double> getP99Millis();
+
+    Map<String, Double> getMaxMillis();
+
+    Map<String, Long> getRetriesByHost();
+
+    Map<String, Long> getFailuresByHost();
+
+    String getSummary();
+}
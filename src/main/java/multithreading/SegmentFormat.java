@@ -0,0 +1,150 @@
+package multithreading;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+// Layout shared by SegmentResultFormat and SegmentReader.
+//
+// A segment file is a header followed by blocks:
+//   header:  int MAGIC, byte VERSION, byte compression
+//   block:   int storedLength, int rawLength, int newStrings, int records, byte[storedLength] payload
+//   end:     int END_OF_SEGMENT, written when the segment is closed
+// The (optionally compressed) payload holds the dictionary strings first used in this block, then the records.
+// A record is varint length-prefixed: url, title, varint link count, then varint ids into the segment dictionary.
+// Since version 2 it ends with the URL of the page this one is a near duplicate of, as dictionary id + 1 (0 = none).
+// Strings are varint length-prefixed UTF-8; titles store length + 1 so that 0 can mean null.
+// Because each block carries its own dictionary additions, a segment cut short by a crash is readable up to its
+// last complete block.
+final class SegmentFormat {
+    static final int MAGIC = 0x53435253; // "SCRS"
+    static final byte VERSION = 2;
+    // Oldest version SegmentReader still reads
+    static final byte MIN_VERSION = 1;
+    static final int HEADER_BYTES = 6;
+    static final int BLOCK_HEADER_BYTES = 16;
+    static final int END_OF_SEGMENT = -1;
+    static final String SUFFIX = ".seg";
+
+    enum Compression {
+        NONE, DEFLATE, GZIP
+    }
+
+    private SegmentFormat() {
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    static String readString(ByteBuffer in) {
+        return readString(in, readVarint(in));
+    }
+
+    static String readString(ByteBuffer in, int length) {
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(in.position(), bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        in.position(in.position() + length);
+        return value;
+    }
+
+    static byte[] compress(Compression compression, byte[] raw, int length) throws IOException {
+        switch (compression) {
+            case DEFLATE: {
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try {
+                    deflater.setInput(raw, 0, length);
+                    deflater.finish();
+                    ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+                    byte[] buffer = new byte[8192];
+                    while (!deflater.finished()) {
+                        out.write(buffer, 0, deflater.deflate(buffer));
+                    }
+                    return out.toByteArray();
+                } finally {
+                    deflater.end();
+                }
+            }
+            case GZIP: {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+                try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                    gzip.write(raw, 0, length);
+                }
+                return out.toByteArray();
+            }
+            default: {
+                byte[] copy = new byte[length];
+                System.arraycopy(raw, 0, copy, 0, length);
+                return copy;
+            }
+        }
+    }
+
+    static ByteBuffer decompress(Compression compression, ByteBuffer stored, int rawLength) throws IOException {
+        switch (compression) {
+            case DEFLATE: {
+                Inflater inflater = new Inflater();
+                try {
+                    inflater.setInput(stored);
+                    byte[] raw = new byte[rawLength];
+                    int read = 0;
+                    while (read < rawLength && !inflater.finished()) {
+                        int n = inflater.inflate(raw, read, rawLength - read);
+                        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                        read += n;
+                    }
+                    if (read != rawLength) throw new IOException("Truncated deflate block");
+                    return ByteBuffer.wrap(raw);
+                } catch (DataFormatException e) {
+                    throw new IOException("Corrupt deflate block", e);
+                } finally {
+                    inflater.end();
+                }
+            }
+            case GZIP: {
+                byte[] compressed = new byte[stored.remaining()];
+                stored.get(compressed);
+                try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+                    byte[] raw = gzip.readNBytes(rawLength);
+                    if (raw.length != rawLength) throw new IOException("Truncated gzip block");
+                    return ByteBuffer.wrap(raw);
+                }
+            }
+            default:
+                return stored;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package multithreading;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// Iterates the records of one segment file through a read-only memory mapping. Only the current block is ever
+// decompressed, so reading a segment never materialises more than one block plus the segment's dictionary. A file
+// too short to hold the header, left by a writer that died before its first flush, reads as an empty segment
+class SegmentReader implements Iterable<SegmentReader.Record>, AutoCloseable {
+    private static final Logger logger = LogManager.getLogger();
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped;
+    private final byte version;
+    private final SegmentFormat.Compression compression;
+    // Links of the records converted to ScrapedData, shared by the segment's pages and dropped with them
+    private final LinkTable links = new LinkTable();
+
+    SegmentReader(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        if (mapped.remaining() < SegmentFormat.HEADER_BYTES) {
+            if (mapped.remaining() > 0) logger.warn("Segment " + path + " ends inside its header, reading it as empty");
+            this.version = SegmentFormat.VERSION;
+            this.compression = SegmentFormat.Compression.NONE;
+            return;
+        }
+        if (mapped.getInt(0) != SegmentFormat.MAGIC) {
+            channel.close();
+            throw new IOException("Not a result segment: " + path);
+        }
+        if (mapped.get(4) < SegmentFormat.MIN_VERSION || mapped.get(4) > SegmentFormat.VERSION) {
+            channel.close();
+            throw new IOException("Unsupported segment version " + mapped.get(4) + " in " + path);
+        }
+        this.version = mapped.get(4);
+        this.compression = SegmentFormat.Compression.values()[mapped.get(5)];
+    }
+
+    static class Record {
+        private final String url;
+        private final String title;
+        private final int[] linkIds;
+        // Dictionary id + 1, 0 when the page isn't a near duplicate
+        private final int duplicateOf;
+        private final List<String> dictionary;
+        private final LinkTable linkTable;
+
+        Record(String url, String title, int[] linkIds, int duplicateOf, List<String> dictionary, LinkTable linkTable) {
+            this.url = url;
+            this.title = title;
+            this.linkIds = linkIds;
+            this.duplicateOf = duplicateOf;
+            this.dictionary = dictionary;
+            this.linkTable = linkTable;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        // URL of the page this one is a near duplicate of, or null
+        public String getDuplicateOf() {
+            return duplicateOf == 0 ? null : dictionary.get(duplicateOf - 1);
+        }
+
+        public int getLinkCount() {
+            return linkIds.length;
+        }
+
+        // Resolved lazily against the segment dictionary
+        public List<String> getLinks() {
+            return new AbstractList<String>() {
+                @Override
+                public String get(int index) {
+                    return dictionary.get(linkIds[index]);
+                }
+
+                @Override
+                public int size() {
+                    return linkIds.length;
+                }
+            };
+        }
+
+        public ScrapedData toScrapedData() {
+            ScrapedData data = new ScrapedData(title, getLinks(), linkTable);
+            data.setDuplicateOf(getDuplicateOf());
+            return data;
+        }
+    }
+
+    @Override
+    public Iterator<Record> iterator() {
+        return new RecordIterator();
+    }
+
+    private final class RecordIterator implements Iterator<Record> {
+        private final ByteBuffer file = mapped.duplicate().position(Math.min(SegmentFormat.HEADER_BYTES, mapped.limit()));
+        private final List<String> dictionary = new ArrayList<>();
+        private ByteBuffer block;
+        private int recordsLeft;
+        private boolean ended;
+
+        @Override
+        public boolean hasNext() {
+            while (recordsLeft == 0 && !ended) {
+                nextBlock();
+            }
+            return recordsLeft > 0;
+        }
+
+        @Override
+        public Record next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            recordsLeft--;
+
+            int length = SegmentFormat.readVarint(block);
+            ByteBuffer in = block.slice(block.position(), length);
+            block.position(block.position() + length);
+
+            String url = SegmentFormat.readString(in);
+            int titleLength = SegmentFormat.readVarint(in);
+            String title = titleLength == 0 ? null : SegmentFormat.readString(in, titleLength - 1);
+            int[] linkIds = new int[SegmentFormat.readVarint(in)];
+            for (int i = 0; i < linkIds.length; i++) {
+                linkIds[i] = SegmentFormat.readVarint(in);
+            }
+            int duplicateOf = version >= 2 ? SegmentFormat.readVarint(in) : 0;
+            return new Record(url, title, linkIds, duplicateOf, Collections.unmodifiableList(dictionary), links);
+        }
+
+        private void nextBlock() {
+            if (file.remaining() < 4 || file.getInt(file.position()) == SegmentFormat.END_OF_SEGMENT) {
+                ended = true;
+                return;
+            }
+            if (file.remaining() < SegmentFormat.BLOCK_HEADER_BYTES) {
+                truncated();
+                return;
+            }
+            int storedLength = file.getInt();
+            int rawLength = file.getInt();
+            int newStrings = file.getInt();
+            int records = file.getInt();
+            if (storedLength < 0 || file.remaining() < storedLength) {
+                truncated();
+                return;
+            }
+
+            ByteBuffer stored = file.slice(file.position(), storedLength);
+            file.position(file.position() + storedLength);
+            try {
+                block = SegmentFormat.decompress(compression, stored, rawLength);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Corrupt block in " + path, e);
+            }
+            for (int i = 0; i < newStrings; i++) {
+                dictionary.add(SegmentFormat.readString(block));
+            }
+            recordsLeft = records;
+        }
+
+        // The writer died mid-block; everything before it is still good
+        private void truncated() {
+            logger.warn("Segment " + path + " ends in an incomplete block, reading stops there");
+            ended = true;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Segment files in a directory, oldest first
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return segments;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SegmentFormat.SUFFIX)) {
+            for (Path segment : stream) {
+                segments.add(segment);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    // Exports segments back to the text format: SegmentReader <segmentDirectory> <textFile>
+    public static void main(String[] args) throws IOException {
+        Path directory = Path.of(args.length > 0 ? args[0] : "logs/segments");
+        String textPath = args.length > 1 ? args[1] : "logs/results.txt";
+
+        long count = 0;
+        try (TextResultFormat text = new TextResultFormat(textPath)) {
+            for (Path segment : segments(directory)) {
+                try (SegmentReader reader = new SegmentReader(segment)) {
+                    for (Record record : reader) {
+                        text.write(record.getUrl(), record.toScrapedData());
+                        count++;
+                    }
+                }
+            }
+        }
+        logger.info("Exported " + count + " records from " + directory + " to " + textPath);
+    }
+}
@@ -0,0 +1,153 @@
+package multithreading;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Writes results as binary segments (see SegmentFormat) into a directory, starting a new segment once the current
+// one passes maxSegmentBytes. Links are stored as ids into a per-segment dictionary, so the chrome links repeated on
+// every page are written once per segment
+class SegmentResultFormat implements ResultFormat {
+    private static final Logger logger = LogManager.getLogger();
+    private static final int BLOCK_BYTES = 256 * 1024;
+
+    private final Path directory;
+    private final SegmentFormat.Compression compression;
+    private final long maxSegmentBytes;
+
+    private DataOutputStream out;
+    private Path segmentPath;
+    private long segmentBytes;
+    private int segmentNumber;
+
+    // Dictionary of the current segment; strings from dictionary.size() - newStrings on are not written yet
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> newStrings = new ArrayList<>();
+    private final ByteArrayOutputStream records = new ByteArrayOutputStream(BLOCK_BYTES);
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(4096);
+    private int blockRecords;
+
+    SegmentResultFormat(Path directory, SegmentFormat.Compression compression, long maxSegmentBytes) throws IOException {
+        this.directory = directory;
+        this.compression = compression;
+        this.maxSegmentBytes = maxSegmentBytes;
+        Files.createDirectories(directory);
+        List<Path> existing = SegmentReader.segments(directory);
+        this.segmentNumber = existing.isEmpty() ? 0 : numberOf(existing.get(existing.size() - 1));
+        openSegment();
+    }
+
+    @Override
+    public void write(String url, ScrapedData data) throws IOException {
+        record.reset();
+        SegmentFormat.writeString(record, url);
+        if (data.getTitle() == null) {
+            SegmentFormat.writeVarint(record, 0);
+        } else {
+            byte[] title = data.getTitle().getBytes(StandardCharsets.UTF_8);
+            SegmentFormat.writeVarint(record, title.length + 1);
+            record.write(title, 0, title.length);
+        }
+        List<String> links = data.getLinks();
+        SegmentFormat.writeVarint(record, links.size());
+        for (String link : links) {
+            SegmentFormat.writeVarint(record, idOf(link));
+        }
+        SegmentFormat.writeVarint(record, data.getDuplicateOf() == null ? 0 : idOf(data.getDuplicateOf()) + 1);
+
+        SegmentFormat.writeVarint(records, record.size());
+        record.writeTo(records);
+        blockRecords++;
+
+        if (records.size() >= BLOCK_BYTES) {
+            writeBlock();
+            if (segmentBytes >= maxSegmentBytes) {
+                closeSegment();
+                openSegment();
+            }
+        }
+    }
+
+    private int idOf(String link) {
+        Integer id = dictionary.get(link);
+        if (id == null) {
+            id = dictionary.size();
+            dictionary.put(link, id);
+            newStrings.add(link);
+        }
+        return id;
+    }
+
+    // Blocks are normally closed at BLOCK_BYTES; an explicit flush has to close the open one early, since a reader
+    // only sees complete blocks
+    @Override
+    public void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+
+    private void writeBlock() throws IOException {
+        if (blockRecords == 0) return;
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(records.size() + newStrings.size() * 32);
+        for (String value : newStrings) {
+            SegmentFormat.writeString(payload, value);
+        }
+        records.writeTo(payload);
+
+        byte[] raw = payload.toByteArray();
+        byte[] stored = SegmentFormat.compress(compression, raw, raw.length);
+        out.writeInt(stored.length);
+        out.writeInt(raw.length);
+        out.writeInt(newStrings.size());
+        out.writeInt(blockRecords);
+        out.write(stored);
+        segmentBytes += SegmentFormat.BLOCK_HEADER_BYTES + stored.length;
+
+        newStrings.clear();
+        records.reset();
+        blockRecords = 0;
+    }
+
+    private void openSegment() throws IOException {
+        segmentNumber++;
+        segmentPath = directory.resolve(String.format("results-%05d%s", segmentNumber, SegmentFormat.SUFFIX));
+        out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(segmentPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), 64 * 1024));
+        out.writeInt(SegmentFormat.MAGIC);
+        out.writeByte(SegmentFormat.VERSION);
+        out.writeByte(compression.ordinal());
+        segmentBytes = SegmentFormat.HEADER_BYTES;
+        dictionary.clear();
+        newStrings.clear();
+    }
+
+    private static int numberOf(Path segment) {
+        String digits = segment.getFileName().toString().replaceAll("\\D", "");
+        return digits.isEmpty() ? 0 : Integer.parseInt(digits);
+    }
+
+    private void closeSegment() throws IOException {
+        writeBlock();
+        out.writeInt(SegmentFormat.END_OF_SEGMENT);
+        out.close();
+        logger.debug("Closed segment " + segmentPath + " (" + (segmentBytes + 4) + " bytes, " + dictionary.size() + " distinct links)");
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeSegment();
+    }
+}
@@ -0,0 +1,229 @@
+package multithreading;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// File-based link exchange between the shard processes of a ShardedCrawl, all on one machine. Every tick a shard
+// writes the links it forwards to each other shard as one file in that shard's inbox directory (written under a
+// temporary name and renamed, so readers never see half a file), claims, reads and deletes the files in its own
+// inbox, and publishes a status file with its sent/received link counts and whether it is idle. The coordinator uses
+// those to detect that the whole crawl has quiesced, then creates the stop file, which closes every shard's inbox
+class ShardExchange implements LinkRouter, Closeable {
+    private static final Logger logger = LogManager.getLogger();
+    private static final long TICK_MILLIS = 100;
+    private static final String MESSAGE_SUFFIX = ".links";
+    // A message being read, and one that failed partway and is kept aside instead of being read again
+    private static final String CLAIMED_SUFFIX = ".processing";
+    private static final String FAILED_SUFFIX = ".failed";
+    // Most recently forwarded links remembered; an older one seen again is sent again, which the owner ignores
+    private static final int FORWARDED_CAPACITY = 100_000;
+
+    private final int shard;
+    private final ShardRing ring;
+    private final Path directory;
+    // Links recently forwarded, so a link found on many pages is usually sent once; guarded by itself
+    private final LinkedHashMap<String, Boolean> forwarded = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<List<String>> outgoing = new ArrayList<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "shard-exchange");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only touched by the timer thread
+    private long sent;
+    private long received;
+    private long sequence;
+    private volatile LinkInbox inbox;
+
+    ShardExchange(int shard, ShardRing ring, Path directory) throws IOException {
+        if (shard < 0 || shard >= ring.size()) throw new IllegalArgumentException("No shard " + shard + " in a ring of " + ring.size());
+        this.shard = shard;
+        this.ring = ring;
+        this.directory = directory;
+        for (int i = 0; i < ring.size(); i++) {
+            outgoing.add(new ArrayList<>());
+        }
+        Files.createDirectories(inboxOf(directory, shard));
+    }
+
+    static Path inboxOf(Path directory, int shard) {
+        return directory.resolve("inbox-" + shard);
+    }
+
+    static Path statusOf(Path directory, int shard) {
+        return directory.resolve("status-" + shard);
+    }
+
+    static Path stopFileOf(Path directory) {
+        return directory.resolve("stop");
+    }
+
+    @Override
+    public boolean owns(String url) {
+        return ring.shardOf(url) == shard;
+    }
+
+    @Override
+    public void forward(String url, int depth) {
+        synchronized (forwarded) {
+            if (forwarded.put(url, Boolean.TRUE) != null) return;
+            if (forwarded.size() > FORWARDED_CAPACITY) {
+                Iterator<String> eldest = forwarded.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        List<String> links = outgoing.get(ring.shardOf(url));
+        synchronized (links) {
+            links.add(depth + " " + url);
+        }
+    }
+
+    @Override
+    public void open(LinkInbox inbox) {
+        this.inbox = inbox;
+        writeStatus(false);
+        timer.scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+        try {
+            receive();
+            // Idleness is read before the outgoing queues: a page forwards its links before it finishes, so an
+            // idle crawl's links are already queued and are sent below
+            boolean idle = inbox.isIdle();
+            for (int target = 0; target < outgoing.size(); target++) {
+                send(target);
+            }
+            writeStatus(idle);
+
+            if (Files.exists(stopFileOf(directory))) {
+                receive();
+                inbox.close();
+                timer.shutdown();
+                logger.info("Shard " + shard + " stopping: sent " + sent + " links, received " + received);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Shard " + shard + " link exchange failed : " + e.getMessage());
+        }
+    }
+
+    private void send(int target) throws IOException {
+        List<String> links = outgoing.get(target);
+        List<String> batch;
+        synchronized (links) {
+            if (links.isEmpty()) return;
+            batch = new ArrayList<>(links);
+            links.clear();
+        }
+        Path inboxDirectory = inboxOf(directory, target);
+        Files.createDirectories(inboxDirectory);
+        String name = String.format("%d-%012d", shard, sequence++);
+        Path temp = inboxDirectory.resolve(name + ".tmp");
+        Files.write(temp, batch, StandardCharsets.UTF_8);
+        Files.move(temp, inboxDirectory.resolve(name + MESSAGE_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+        sent += batch.size();
+    }
+
+    private void receive() throws IOException {
+        List<Path> messages = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(inboxOf(directory, shard), "*" + MESSAGE_SUFFIX)) {
+            for (Path file : files) {
+                messages.add(file);
+            }
+        }
+        Collections.sort(messages);
+        for (Path message : messages) {
+            // Claimed before reading, so links delivered before a failure are never delivered a second time
+            Path claimed = message.resolveSibling(message.getFileName() + CLAIMED_SUFFIX);
+            Files.move(message, claimed, StandardCopyOption.ATOMIC_MOVE);
+            long receivedBefore = received;
+            try {
+                deliver(claimed);
+                Files.delete(claimed);
+            } catch (IOException | RuntimeException e) {
+                Path failed = message.resolveSibling(message.getFileName() + FAILED_SUFFIX);
+                Files.move(claimed, failed, StandardCopyOption.ATOMIC_MOVE);
+                // Its undelivered links still count as received, or the coordinator would wait for them forever
+                try (Stream<String> lines = Files.lines(failed, StandardCharsets.UTF_8)) {
+                    received = receivedBefore + lines.count();
+                } catch (IOException | UncheckedIOException countFailure) {
+                    e.addSuppressed(countFailure);
+                }
+                logger.error("Shard " + shard + " could not read " + message.getFileName() + ", moved it to " + failed + " : " + e.getMessage());
+            }
+        }
+    }
+
+    private void deliver(Path message) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(message, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // Counted even when malformed, the sender counted it too
+                received++;
+                int space = line.indexOf(' ');
+                if (space < 0) continue;
+                int depth;
+                try {
+                    depth = Integer.parseInt(line.substring(0, space));
+                } catch (NumberFormatException e) {
+                    logger.warn("Shard " + shard + " skipping malformed link line in " + message.getFileName());
+                    continue;
+                }
+                inbox.receive(line.substring(space + 1), depth);
+            }
+        }
+    }
+
+    private void writeStatus(boolean idle) {
+        Path status = statusOf(directory, shard);
+        Path temp = directory.resolve(status.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(sent + " " + received + " " + idle);
+        } catch (IOException e) {
+            logger.error("Could not write the status of shard " + shard + " : " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temp, status, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.error("Could not publish the status of shard " + shard + " : " + e.getMessage());
+        }
+    }
+
+    // {sent, received, idle as 0/1}, or null if the shard hasn't published a status yet
+    static long[] readStatus(Path directory, int shard) {
+        try {
+            String[] fields = Files.readString(statusOf(directory, shard), StandardCharsets.UTF_8).trim().split(" ");
+            return new long[]{Long.parseLong(fields[0]), Long.parseLong(fields[1]), Boolean.parseBoolean(fields[2]) ? 1 : 0};
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
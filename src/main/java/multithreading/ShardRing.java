@@ -0,0 +1,67 @@
+package multithreading;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Consistent hashing of hosts onto shards: each shard owns virtualNodes points on a 64-bit ring and a host belongs
+// to the shard of the first point at or after its hash. Partitioning on the host keeps a host's rate limit and
+// circuit breaker in one process, and changing the shard count only moves about 1/N of the hosts
+class ShardRing {
+    private final int shards;
+    private final long[] points;
+    private final int[] owners;
+
+    ShardRing(int shards, int virtualNodes) {
+        if (shards <= 0 || virtualNodes <= 0) throw new IllegalArgumentException("Shards and virtual nodes must be positive");
+        this.shards = shards;
+
+        long[][] entries = new long[shards * virtualNodes][];
+        for (int shard = 0; shard < shards; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                entries[shard * virtualNodes + node] = new long[]{hash("shard-" + shard + "#" + node), shard};
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[entries.length];
+        this.owners = new int[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            points[i] = entries[i][0];
+            owners[i] = (int) entries[i][1];
+        }
+    }
+
+    ShardRing(int shards) {
+        this(shards, 128);
+    }
+
+    int size() {
+        return shards;
+    }
+
+    int shardOf(String url) {
+        return shardOfHost(HostScheduler.hostOf(url));
+    }
+
+    int shardOfHost(String host) {
+        if (shards == 1) return 0;
+        int index = Arrays.binarySearch(points, hash(host));
+        if (index < 0) index = -index - 1;
+        // Past the last point wraps around to the first
+        return owners[index == points.length ? 0 : index];
+    }
+
+    // FNV-1a over the UTF-8 bytes, then the murmur3 finaliser so that similar host names spread over the whole ring
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,201 @@
+package multithreading;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Runs one crawl across several worker processes on this machine. Each worker owns the hosts that ShardRing assigns
+// to it, fetches only those, and forwards other links to their owners through a ShardExchange directory. The
+// coordinator watches the workers' status files and stops them once the crawl has quiesced: every shard idle, every
+// forwarded link received, and no counter moved since the previous check. Workers write results to
+// <directory>/shard-N, which are merged into <directory>/merged at the end. Results of an earlier run in the same
+// directory are replaced.
+//
+// Usage: ShardedCrawl [shards=4] [maxDepth=2] [maxPagesPerShard=500] [requestsPerSecondPerHost=5.0] [JSOUP|HTTP_CLIENT]
+//                     [directory=logs/sharded] [seed urls...]
+public class ShardedCrawl {
+    private static final Logger logger = LogManager.getLogger();
+    private static final long POLL_MILLIS = 200;
+    private static final long WORKER_EXIT_SECONDS = 60;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("worker")) {
+            worker(args);
+            return;
+        }
+        int shards = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int maxDepth = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int maxPagesPerShard = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        double requestsPerSecondPerHost = args.length > 3 ? Double.parseDouble(args[3]) : 5.0;
+        FetchBackend backend = args.length > 4 ? FetchBackend.valueOf(args[4].toUpperCase()) : FetchBackend.HTTP_CLIENT;
+        Path directory = Path.of(args.length > 5 ? args[5] : "logs/sharded");
+        List<String> seeds = args.length > 6 ? Arrays.asList(args).subList(6, args.length) : List.of(
+                "https://en.wikipedia.org/wiki/World_War_II",
+                "https://en.wikipedia.org/wiki/Industrial_Revolution",
+                "https://www.britannica.com/event/French-Revolution",
+                "https://www.history.com/topics/renaissance"
+        );
+
+        int merged = run(seeds, shards, maxDepth, maxPagesPerShard, requestsPerSecondPerHost, backend, directory);
+        logger.info("Sharded crawl finished, " + merged + " pages in " + directory.resolve("merged"));
+    }
+
+    // Returns the number of merged results
+    static int run(List<String> seeds, int shards, int maxDepth, int maxPagesPerShard, double requestsPerSecondPerHost,
+                   FetchBackend backend, Path directory) throws IOException, InterruptedException {
+        if (shards <= 0) throw new IllegalArgumentException("Shards must be positive");
+        Path exchange = directory.resolve("exchange");
+        deleteRecursively(exchange);
+        deleteRecursively(directory.resolve("merged"));
+        for (int shard = 0; shard < shards; shard++) {
+            deleteRecursively(directory.resolve("shard-" + shard));
+        }
+        Files.createDirectories(exchange);
+
+        long start = System.currentTimeMillis();
+        List<Process> workers = new ArrayList<>();
+        try {
+            for (int shard = 0; shard < shards; shard++) {
+                workers.add(startWorker(shard, shards, maxDepth, maxPagesPerShard, requestsPerSecondPerHost, backend, directory, seeds));
+            }
+            awaitQuiescence(exchange, workers);
+            Files.createFile(ShardExchange.stopFileOf(exchange));
+
+            for (int shard = 0; shard < shards; shard++) {
+                Process worker = workers.get(shard);
+                if (!worker.waitFor(WORKER_EXIT_SECONDS, TimeUnit.SECONDS)) {
+                    logger.warn("Shard " + shard + " did not exit, killing it");
+                    worker.destroyForcibly();
+                } else if (worker.exitValue() != 0) {
+                    logger.error("Shard " + shard + " exited with status " + worker.exitValue() + ", see " + directory.resolve("shard-" + shard + ".log"));
+                }
+            }
+        } finally {
+            for (Process worker : workers) {
+                if (worker.isAlive()) worker.destroyForcibly();
+            }
+        }
+        logger.info("Shards finished in " + (System.currentTimeMillis() - start) + " ms");
+        return merge(directory, shards);
+    }
+
+    private static Process startWorker(int shard, int shards, int maxDepth, int maxPages, double requestsPerSecondPerHost,
+                                       FetchBackend backend, Path directory, List<String> seeds) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        // Same JVM options (heap, --enable-preview, ...) and class path as this process
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardedCrawl.class.getName());
+        command.add("worker");
+        command.add(String.valueOf(shard));
+        command.add(String.valueOf(shards));
+        command.add(directory.toString());
+        command.add(String.valueOf(maxDepth));
+        command.add(String.valueOf(maxPages));
+        command.add(String.valueOf(requestsPerSecondPerHost));
+        command.add(backend.name());
+        command.addAll(seeds);
+
+        Files.createDirectories(directory);
+        Path log = directory.resolve("shard-" + shard + ".log");
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+    }
+
+    // Returns once two consecutive polls saw every shard idle with all forwarded links received and the same
+    // counters; the counters only grow, so nothing can have moved in between
+    private static void awaitQuiescence(Path exchange, List<Process> workers) throws InterruptedException {
+        long[] previous = null;
+        while (true) {
+            Thread.sleep(POLL_MILLIS);
+            for (int shard = 0; shard < workers.size(); shard++) {
+                if (!workers.get(shard).isAlive()) {
+                    logger.error("Shard " + shard + " exited before the crawl finished, stopping the others");
+                    return;
+                }
+            }
+
+            long[] totals = new long[2];
+            boolean quiet = true;
+            for (int shard = 0; shard < workers.size() && quiet; shard++) {
+                long[] status = ShardExchange.readStatus(exchange, shard);
+                if (status == null || status[2] == 0) {
+                    quiet = false;
+                } else {
+                    totals[0] += status[0];
+                    totals[1] += status[1];
+                }
+            }
+            if (quiet && totals[0] == totals[1] && Arrays.equals(totals, previous)) return;
+            previous = quiet ? totals : null;
+        }
+    }
+
+    private static int merge(Path directory, int shards) throws IOException {
+        int merged = 0;
+        try (SegmentResultFormat out = new SegmentResultFormat(directory.resolve("merged"), SegmentFormat.Compression.DEFLATE, 64L * 1024 * 1024)) {
+            for (int shard = 0; shard < shards; shard++) {
+                Path shardDirectory = directory.resolve("shard-" + shard);
+                if (!Files.isDirectory(shardDirectory)) continue;
+                int pages = 0;
+                for (Path segment : SegmentReader.segments(shardDirectory)) {
+                    try (SegmentReader reader = new SegmentReader(segment)) {
+                        for (SegmentReader.Record record : reader) {
+                            out.write(record.getUrl(), record.toScrapedData());
+                            pages++;
+                        }
+                    }
+                }
+                out.flush();
+                logger.info("Shard " + shard + ": " + pages + " pages");
+                merged += pages;
+            }
+        }
+        return merged;
+    }
+
+    private static void worker(String[] args) throws IOException, InterruptedException {
+        int shard = Integer.parseInt(args[1]);
+        int shards = Integer.parseInt(args[2]);
+        Path directory = Path.of(args[3]);
+        int maxDepth = Integer.parseInt(args[4]);
+        int maxPages = Integer.parseInt(args[5]);
+        double requestsPerSecondPerHost = Double.parseDouble(args[6]);
+        FetchBackend backend = FetchBackend.valueOf(args[7]);
+        List<String> seeds = Arrays.asList(args).subList(8, args.length);
+
+        Scraper scraper = new Scraper(ExecutionMode.VIRTUAL_THREADS, 64, requestsPerSecondPerHost, backend);
+        ShardExchange exchange = new ShardExchange(shard, new ShardRing(shards), directory.resolve("exchange"));
+        scraper.setLinkRouter(exchange);
+        try (ResultWriter writer = new ResultWriter(new SegmentResultFormat(directory.resolve("shard-" + shard),
+                SegmentFormat.Compression.DEFLATE, 64L * 1024 * 1024), 1024, 64)) {
+            CrawlResult result = scraper.crawl(seeds, maxDepth, maxPages, writer);
+            logger.info("Shard " + shard + " of " + shards + " done, " + result);
+        } finally {
+            exchange.close();
+            scraper.shutdown();
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) return;
+        if (Files.isDirectory(path)) {
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(path)) {
+                for (Path child : children) {
+                    deleteRecursively(child);
+                }
+            }
+        }
+        Files.delete(path);
+    }
+}
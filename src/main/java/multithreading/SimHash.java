@@ -0,0 +1,119 @@
+package multithreading;
+
+// Builds a 64-bit SimHash of a page's visible text, fed as UTF-8 bytes in as many pieces as convenient. Features are
+// shingles of three consecutive words; every shingle hash votes +1/-1 on each bit and the fingerprint keeps the
+// majority, so pages differing in a few words end up a few bits apart. Words are runs of ASCII letters and digits,
+// case folded, and of non-ASCII bytes; a non-breaking space and character references like "&amp;" separate words,
+// which keeps the streaming (raw bytes) and DOM (decoded text) extractors' fingerprints close. A word may continue
+// across calls, the way inline tags don't split words in the DOM's text
+final class SimHash {
+    private static final int SHINGLE_WORDS = 3;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int[] votes = new int[64];
+    private long wordHash = FNV_OFFSET;
+    private boolean inWord;
+    // Hashes of the last three words, most recent first
+    private long last;
+    private long secondLast;
+    private long thirdLast;
+    private int words;
+    // Set after a '&' until the reference ends
+    private boolean inReference;
+    private boolean afterC2;
+
+    void add(byte[] text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int b = text[i] & 0xff;
+            if (inReference) {
+                if (b == ';' || !isAsciiLetterOrDigit(b) && b != '#') inReference = false;
+                continue;
+            }
+            if (afterC2) {
+                afterC2 = false;
+                // U+00A0 is C2 A0 in UTF-8
+                if (b == 0xA0) {
+                    endWord();
+                    continue;
+                }
+                appendToWord(0xC2);
+            }
+            if (b == 0xC2) {
+                afterC2 = true;
+            } else if (b == '&') {
+                endWord();
+                inReference = true;
+            } else if (isAsciiLetterOrDigit(b)) {
+                appendToWord(b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b);
+            } else if (b >= 0x80) {
+                appendToWord(b);
+            } else {
+                endWord();
+            }
+        }
+    }
+
+    // The fingerprint, or 0 for a page without any words
+    long value() {
+        if (afterC2) {
+            afterC2 = false;
+            appendToWord(0xC2);
+        }
+        endWord();
+        // A page too short for one full shingle is fingerprinted on the words it has
+        if (words > 0 && words < SHINGLE_WORDS) vote(shingle());
+        if (words == 0) return 0;
+
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (votes[bit] > 0) fingerprint |= 1L << bit;
+        }
+        return fingerprint;
+    }
+
+    static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private void appendToWord(int b) {
+        wordHash = (wordHash ^ b) * FNV_PRIME;
+        inWord = true;
+    }
+
+    private void endWord() {
+        if (!inWord) return;
+        thirdLast = secondLast;
+        secondLast = last;
+        last = mix(wordHash);
+        words++;
+        wordHash = FNV_OFFSET;
+        inWord = false;
+        if (words >= SHINGLE_WORDS) vote(shingle());
+    }
+
+    // Order sensitive hash of the last three words
+    private long shingle() {
+        return mix(last ^ Long.rotateLeft(secondLast, 21) ^ Long.rotateLeft(thirdLast, 42));
+    }
+
+    private void vote(long hash) {
+        for (int bit = 0; bit < 64; bit++) {
+            votes[bit] += (int) ((hash >>> bit) & 1) * 2 - 1;
+        }
+    }
+
+    private static boolean isAsciiLetterOrDigit(int b) {
+        return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9';
+    }
+
+    // murmur3 finaliser
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,77 @@
+package multithreading;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Finds fingerprints within maxDistance bits of one already indexed. The 64 bits are cut into maxDistance + 1
+// bands; two fingerprints that differ in at most maxDistance bits must agree exactly on at least one band, so only
+// the fingerprints sharing a band value with the query are compared. Pages are kept as ids in the index's own
+// LinkTable, which goes away with it
+class SimHashIndex {
+    private final int maxDistance;
+    private final int bands;
+    private final int bandBits;
+    private final List<Map<Long, Bucket>> tables;
+    private final LinkTable urls = new LinkTable();
+    private int size;
+
+    SimHashIndex(int maxDistance) {
+        if (maxDistance < 0 || maxDistance > 15) throw new IllegalArgumentException("Max distance must be between 0 and 15");
+        this.maxDistance = maxDistance;
+        this.bands = maxDistance + 1;
+        this.bandBits = 64 / bands;
+        this.tables = new ArrayList<>(bands);
+        for (int band = 0; band < bands; band++) {
+            tables.add(new HashMap<>());
+        }
+    }
+
+    // The URL of an indexed page within maxDistance of the fingerprint, or null after indexing it under url.
+    // Checking and adding is one step, so of two near-identical pages scraped at once exactly one is the original
+    synchronized String findOrAdd(long fingerprint, String url) {
+        for (int band = 0; band < bands; band++) {
+            Bucket bucket = tables.get(band).get(bandOf(fingerprint, band));
+            if (bucket == null) continue;
+            for (int i = 0; i < bucket.size; i++) {
+                if (SimHash.distance(bucket.fingerprints[i], fingerprint) <= maxDistance) return urls.resolve(bucket.ids[i]);
+            }
+        }
+
+        int id = urls.intern(url);
+        for (int band = 0; band < bands; band++) {
+            tables.get(band).computeIfAbsent(bandOf(fingerprint, band), key -> new Bucket()).add(fingerprint, id);
+        }
+        size++;
+        return null;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    // The last band also takes the bits left over when 64 doesn't divide evenly
+    private long bandOf(long fingerprint, int band) {
+        int shift = band * bandBits;
+        int width = band == bands - 1 ? 64 - shift : bandBits;
+        return width == 64 ? fingerprint : (fingerprint >>> shift) & ((1L << width) - 1);
+    }
+
+    private static final class Bucket {
+        private long[] fingerprints = new long[2];
+        private int[] ids = new int[2];
+        private int size;
+
+        private void add(long fingerprint, int id) {
+            if (size == ids.length) {
+                fingerprints = Arrays.copyOf(fingerprints, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            fingerprints[size] = fingerprint;
+            ids[size] = id;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package multithreading;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jsoup.nodes.Entities;
+import org.jsoup.parser.Parser;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Pulls the title and anchor hrefs out of the raw bytes in one pass, without building a DOM. Tag and attribute names
+// are ASCII, so the bytes are scanned directly and only titles and href values are ever decoded to Strings.
+// Script/style/textarea bodies and comments are skipped like a browser would. Pages in an encoding that isn't
+// ASCII-compatible (UTF-16/32) go to the fallback extractor
+class StreamingExtractor implements PageExtractor {
+    private static final Logger logger = LogManager.getLogger();
+    private static final int CHARSET_SNIFF_BYTES = 1024;
+    private static final byte[] WORD_BREAK = {' '};
+    // Elements that don't break words in the DOM's text; any other tag separates the text on either side
+    private static final String[] INLINE_ELEMENTS = {"a", "abbr", "b", "bdi", "bdo", "cite", "code", "data", "dfn", "em",
+            "font", "i", "kbd", "mark", "q", "s", "samp", "small", "span", "strong", "sub", "sup", "time", "u", "var"};
+
+    private final PageExtractor fallback;
+
+    StreamingExtractor(PageExtractor fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public ScrapedData extract(FetchedPage page, LinkTable links, boolean fingerprint) {
+        byte[] html = page.getBody();
+        int start = 0;
+        Charset charset;
+        if (html.length >= 3 && (html[0] & 0xff) == 0xEF && (html[1] & 0xff) == 0xBB && (html[2] & 0xff) == 0xBF) {
+            charset = StandardCharsets.UTF_8;
+            start = 3;
+        } else {
+            charset = charsetOf(page.getCharset());
+            if (charset == null) charset = charsetOf(sniffCharset(html));
+            if (charset == null) charset = StandardCharsets.UTF_8;
+        }
+
+        if (!isAsciiCompatible(charset) || startsWithUtf16Bom(html)) {
+            return fallback.extract(page, links, fingerprint);
+        }
+        try {
+            return tokenise(html, start, charset, links, fingerprint ? new SimHash() : null);
+        } catch (RuntimeException e) {
+            logger.debug("Streaming extraction failed for " + page.getUrl() + ", falling back : " + e.getMessage());
+            return fallback.extract(page, links, fingerprint);
+        }
+    }
+
+    // simHash is null when no fingerprint is wanted
+    private static ScrapedData tokenise(byte[] html, int start, Charset charset, LinkTable linkTable, SimHash simHash) {
+        List<String> links = new ArrayList<>();
+        String title = null;
+        int n = html.length;
+        int i = start;
+
+        while (i < n) {
+            int lt = indexOf(html, (byte) '<', i);
+            if (lt < 0 || lt + 1 >= n) {
+                if (simHash != null) simHash.add(html, i, n);
+                break;
+            }
+            if (simHash != null) simHash.add(html, i, lt);
+            i = lt + 1;
+
+            byte c = html[i];
+            if (c == '!') {
+                if (regionMatches(html, i, "!--")) {
+                    int end = indexOfIgnoreCase(html, "-->", i + 3);
+                    i = end < 0 ? n : end + 3;
+                } else {
+                    i = skipPast(html, i, (byte) '>');
+                }
+                continue;
+            }
+            if (c == '?') {
+                i = skipPast(html, i, (byte) '>');
+                continue;
+            }
+
+            boolean closing = c == '/';
+            if (closing) i++;
+            int nameStart = i;
+            while (i < n && !isWhitespace(html[i]) && html[i] != '/' && html[i] != '>') i++;
+            int nameEnd = i;
+            // A '<' that doesn't open a tag is just text
+            if (nameEnd == nameStart || !isAsciiLetter(html[nameStart])) continue;
+            if (simHash != null && !isInline(html, nameStart, nameEnd)) simHash.add(WORD_BREAK, 0, 1);
+            if (closing) {
+                i = skipPast(html, i, (byte) '>');
+                continue;
+            }
+
+            boolean anchor = nameEquals(html, nameStart, nameEnd, "a");
+            String href = null;
+
+            // Attributes, up to the end of the tag
+            while (i < n) {
+                while (i < n && isWhitespace(html[i])) i++;
+                if (i >= n) break;
+                if (html[i] == '>') {
+                    i++;
+                    break;
+                }
+                if (html[i] == '/' || html[i] == '=') {
+                    i++;
+                    continue;
+                }
+
+                int attrStart = i;
+                while (i < n && !isWhitespace(html[i]) && html[i] != '=' && html[i] != '>' && html[i] != '/') i++;
+                int attrEnd = i;
+                while (i < n && isWhitespace(html[i])) i++;
+
+                int valueStart = i;
+                int valueEnd = i;
+                if (i < n && html[i] == '=') {
+                    i++;
+                    while (i < n && isWhitespace(html[i])) i++;
+                    if (i < n && (html[i] == '"' || html[i] == '\'')) {
+                        byte quote = html[i];
+                        valueStart = i + 1;
+                        int close = indexOf(html, quote, valueStart);
+                        valueEnd = close < 0 ? n : close;
+                        i = close < 0 ? n : close + 1;
+                    } else {
+                        valueStart = i;
+                        while (i < n && !isWhitespace(html[i]) && html[i] != '>') i++;
+                        valueEnd = i;
+                    }
+                }
+
+                // Like the DOM parser, the first of duplicate attributes wins
+                if (anchor && href == null && nameEquals(html, attrStart, attrEnd, "href")) {
+                    href = unescape(new String(html, valueStart, valueEnd - valueStart, charset), true);
+                }
+            }
+
+            if (href != null) links.add(href);
+
+            if (nameEquals(html, nameStart, nameEnd, "title")) {
+                int end = indexOfIgnoreCase(html, "</title", i);
+                if (title == null) {
+                    String text = new String(html, i, (end < 0 ? n : end) - i, charset);
+                    title = normaliseWhitespace(unescape(text, false));
+                }
+                i = end < 0 ? n : end;
+            } else if (nameEquals(html, nameStart, nameEnd, "script") || nameEquals(html, nameStart, nameEnd, "style")
+                    || nameEquals(html, nameStart, nameEnd, "textarea")) {
+                // Raw text: anything that looks like a tag in here isn't one
+                String close = "</" + new String(html, nameStart, nameEnd - nameStart, StandardCharsets.US_ASCII);
+                int end = indexOfIgnoreCase(html, close, i);
+                i = end < 0 ? n : end;
+            }
+        }
+
+        return new ScrapedData(title == null ? "" : title, links, linkTable, simHash == null ? 0 : simHash.value());
+    }
+
+    // Jsoup's unescaper sets up a full character reader (~14KB) per call, so the common well-formed "&name;" and
+    // "&#n;" references are decoded here and only anything unusual is handed to it
+    private static String unescape(String value, boolean inAttribute) {
+        int amp = value.indexOf('&');
+        if (amp < 0) return value;
+
+        StringBuilder out = new StringBuilder(value.length());
+        out.append(value, 0, amp);
+        int i = amp;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            if (c != '&') {
+                out.append(c);
+                i++;
+                continue;
+            }
+            int semicolon = value.indexOf(';', i + 1);
+            if (semicolon <= i + 1 || semicolon - i > 33) return Parser.unescapeEntities(value, inAttribute);
+
+            String name = value.substring(i + 1, semicolon);
+            if (name.charAt(0) == '#') {
+                int codePoint = parseCodePoint(name);
+                if (codePoint < 0) return Parser.unescapeEntities(value, inAttribute);
+                out.appendCodePoint(codePoint);
+            } else if (Entities.isNamedEntity(name)) {
+                out.append(Entities.getByName(name));
+            } else {
+                return Parser.unescapeEntities(value, inAttribute);
+            }
+            i = semicolon + 1;
+        }
+        return out.toString();
+    }
+
+    // "#123" or "#x7B"; -1 for anything the full unescaper should judge
+    private static int parseCodePoint(String reference) {
+        boolean hex = reference.length() > 1 && (reference.charAt(1) == 'x' || reference.charAt(1) == 'X');
+        String digits = reference.substring(hex ? 2 : 1);
+        if (digits.isEmpty() || digits.length() > 7) return -1;
+        try {
+            int codePoint = Integer.parseInt(digits, hex ? 16 : 10);
+            return codePoint > 0 && codePoint < 0x80 || codePoint >= 0xA0 && codePoint <= 0x10FFFF && (codePoint < 0xD800 || codePoint > 0xDFFF)
+                    ? codePoint : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String normaliseWhitespace(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            // Same whitespace and invisible characters the DOM parser drops from title text
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u00a0') {
+                pendingSpace = out.length() > 0;
+            } else if (c != '\u200b' && c != '\u00ad') {
+                if (pendingSpace) out.append(' ');
+                pendingSpace = false;
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    // Looks for a charset declaration in the first bytes, e.g. <meta charset="utf-8">
+    private static String sniffCharset(byte[] html) {
+        int limit = Math.min(html.length, CHARSET_SNIFF_BYTES);
+        String head = new String(html, 0, limit, StandardCharsets.ISO_8859_1).toLowerCase(Locale.ROOT);
+        int index = head.indexOf("charset=");
+        if (index < 0) return null;
+
+        int start = index + "charset=".length();
+        while (start < head.length() && (head.charAt(start) == '"' || head.charAt(start) == '\'' || head.charAt(start) == ' ')) start++;
+        int end = start;
+        while (end < head.length() && (Character.isLetterOrDigit(head.charAt(end)) || "-_:.".indexOf(head.charAt(end)) >= 0)) end++;
+        return end > start ? head.substring(start, end) : null;
+    }
+
+    private static Charset charsetOf(String name) {
+        if (name == null) return null;
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        String name = charset.name().toUpperCase(Locale.ROOT);
+        return !name.startsWith("UTF-16") && !name.startsWith("UTF-32");
+    }
+
+    private static boolean startsWithUtf16Bom(byte[] html) {
+        return html.length >= 2 && ((html[0] & 0xff) == 0xFE && (html[1] & 0xff) == 0xFF
+                || (html[0] & 0xff) == 0xFF && (html[1] & 0xff) == 0xFE);
+    }
+
+    private static int indexOf(byte[] html, byte target, int from) {
+        for (int i = from; i < html.length; i++) {
+            if (html[i] == target) return i;
+        }
+        return -1;
+    }
+
+    private static int skipPast(byte[] html, int from, byte target) {
+        int index = indexOf(html, target, from);
+        return index < 0 ? html.length : index + 1;
+    }
+
+    private static int indexOfIgnoreCase(byte[] html, String needle, int from) {
+        int last = html.length - needle.length();
+        for (int i = from; i <= last; i++) {
+            if (regionMatches(html, i, needle)) return i;
+        }
+        return -1;
+    }
+
+    // ASCII case-insensitive comparison of html[offset..] against needle
+    private static boolean regionMatches(byte[] html, int offset, String needle) {
+        if (offset + needle.length() > html.length) return false;
+        for (int i = 0; i < needle.length(); i++) {
+            if (toLower(html[offset + i]) != needle.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean nameEquals(byte[] html, int start, int end, String name) {
+        return end - start == name.length() && regionMatches(html, start, name);
+    }
+
+    private static int toLower(byte b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+
+    private static boolean isInline(byte[] html, int nameStart, int nameEnd) {
+        for (String element : INLINE_ELEMENTS) {
+            if (nameEquals(html, nameStart, nameEnd, element)) return true;
+        }
+        return false;
+    }
+
+    private static boolean isAsciiLetter(byte b) {
+        return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+    }
+}
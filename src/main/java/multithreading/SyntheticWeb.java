@@ -0,0 +1,164 @@
+package multithreading;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+// Embedded local HTTP server serving generated pages, so Scraper can be exercised without the network.
+// Page N links to pages N * fanOut + 1 .. N * fanOut + fanOut, so crawling from page 0 walks a tree of distinct
+// pages. A fixed, seed-independent fraction of pages (errorRate) answers its first request with a 503, so the
+// same pages fail on every run and succeed when retried. With several hosts, page N is served from loopback address
+// 127.0.0.(N % hosts + 1), which Linux routes to the local machine like 127.0.0.1, and links are absolute
+class SyntheticWeb implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger();
+    private static final String FILLER = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor. ";
+
+    private final HttpServer[] servers;
+    private final ExecutorService handlers = Executors.newVirtualThreadPerTaskExecutor();
+    private final int latencyMillis;
+    private final int fanOut;
+    private final int pageBytes;
+    private final double errorRate;
+    private final Set<Long> failedOnce = ConcurrentHashMap.newKeySet();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    SyntheticWeb(int latencyMillis) throws IOException {
+        this(latencyMillis, 5, 0, 0);
+    }
+
+    SyntheticWeb(int latencyMillis, int fanOut, int pageBytes, double errorRate) throws IOException {
+        this(latencyMillis, fanOut, pageBytes, errorRate, 1);
+    }
+
+    SyntheticWeb(int latencyMillis, int fanOut, int pageBytes, double errorRate, int hosts) throws IOException {
+        if (hosts <= 0 || hosts > 254) throw new IllegalArgumentException("Hosts must be between 1 and 254");
+        if (fanOut < 0 || pageBytes < 0 || errorRate < 0 || errorRate > 1) throw new IllegalArgumentException("Invalid page shape");
+        this.latencyMillis = latencyMillis;
+        this.fanOut = fanOut;
+        this.pageBytes = pageBytes;
+        this.errorRate = errorRate;
+        this.servers = new HttpServer[hosts];
+        for (int host = 0; host < hosts; host++) {
+            InetAddress address = host == 0 ? InetAddress.getLoopbackAddress() : InetAddress.getByAddress(new byte[]{127, 0, 0, (byte) (host + 1)});
+            servers[host] = HttpServer.create(new InetSocketAddress(address, 0), 4096);
+            servers[host].setExecutor(handlers);
+            servers[host].createContext("/page/", this::handle);
+            servers[host].start();
+        }
+        logger.info("Synthetic web listening on " + baseUrl() + (hosts > 1 ? " and " + (hosts - 1) + " more loopback hosts" : ""));
+    }
+
+    String baseUrl() {
+        return baseUrl(0);
+    }
+
+    private String baseUrl(int host) {
+        return "http://127.0.0." + (host + 1) + ":" + servers[host].getAddress().getPort();
+    }
+
+    String urlFor(long page) {
+        return baseUrl((int) (page % servers.length)) + "/page/" + page;
+    }
+
+    List<String> urls(int count) {
+        List<String> urls = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            urls.add(urlFor(i));
+        }
+        return urls;
+    }
+
+    long requestCount() {
+        return requests.sum();
+    }
+
+    long errorCount() {
+        return errors.sum();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        try {
+            if (latencyMillis > 0) Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        long page;
+        try {
+            page = Long.parseLong(path.substring("/page/".length()));
+        } catch (NumberFormatException e) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+
+        if (isFlaky(page) && failedOnce.add(page)) {
+            errors.increment();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+
+        // Pages never change, so a conditional GET for a known page is always answered with 304
+        String etag = "\"page-" + page + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        StringBuilder html = new StringBuilder();
+        html.append("<html><head><title>Page ").append(page).append("</title></head><body>");
+        for (int i = 1; i <= fanOut; i++) {
+            long child = page * fanOut + i;
+            html.append("<a href=\"").append(servers.length > 1 ? urlFor(child) : "/page/" + child).append("\">next ").append(i).append("</a>");
+        }
+        while (html.length() < pageBytes) {
+            html.append("<p>").append(FILLER).append(FILLER).append("</p>");
+        }
+        html.append("</body></html>");
+
+        byte[] body = html.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // Spreads page numbers uniformly over [0, 1) so roughly errorRate of them are flaky
+    private boolean isFlaky(long page) {
+        if (errorRate <= 0) return false;
+        long mixed = page * 0x9E3779B97F4A7C15L;
+        mixed ^= mixed >>> 32;
+        mixed *= 0xD6E8FEB86659FD93L;
+        mixed ^= mixed >>> 32;
+        return (mixed >>> 11) * 0x1.0p-53 < errorRate;
+    }
+
+    @Override
+    public void close() {
+        for (HttpServer server : servers) {
+            server.stop(0);
+        }
+        handlers.shutdownNow();
+    }
+}
@@ -0,0 +1,40 @@
+package multithreading;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+
+// The original human readable dump, appended to a single file
+class TextResultFormat implements ResultFormat {
+    private final BufferedWriter writer;
+
+    TextResultFormat(String path) throws IOException {
+        this.writer = new BufferedWriter(new FileWriter(path, true));
+    }
+
+    @Override
+    public void write(String url, ScrapedData data) throws IOException {
+        writer.write("URL : " + url);
+        writer.newLine();
+        writer.write("Title: " + data.getTitle());
+        writer.newLine();
+        writer.write("Links : " + data.getLinks());
+        writer.newLine();
+        if (data.getDuplicateOf() != null) {
+            writer.write("Duplicate of : " + data.getDuplicateOf());
+            writer.newLine();
+        }
+        writer.write("-------------------------");
+        writer.newLine();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,32 @@
+package multithreading;
+
+// Classic token bucket: refills continuously at a fixed rate up to a burst capacity
+class TokenBucket {
+    private final double capacity;
+    private final double refillPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    TokenBucket(double permitsPerSecond, double burst) {
+        if (permitsPerSecond <= 0) throw new IllegalArgumentException("Rate must be positive");
+        if (burst < 1) throw new IllegalArgumentException("Burst must be at least 1");
+
+        this.capacity = burst;
+        this.refillPerNano = permitsPerSecond / 1_000_000_000.0;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    // Takes a token and returns 0 if one is available, otherwise returns the nanos until the next one is
+    synchronized long tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / refillPerNano));
+    }
+}